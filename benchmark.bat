@@ -0,0 +1,20 @@
+@echo off
+CLS
+
+:: Local variables
+SET SRCDIR=src
+SET BENCHDIR=benchmark_bin
+SET BENCHOUT=benchmark_javac.out
+SET BENCHERR=benchmark_javac.err
+SET MAINCLASSSRC=src/benchmark/Harness.java
+SET MAINCLASSBIN=benchmark.Harness
+
+ECHO "Compiling benchmarks..."
+javac -Xlint -cp ".;%SRCDIR%" %MAINCLASSSRC% -d %BENCHDIR% > %BENCHOUT% 2> %BENCHERR%
+
+:: Arguments select the benchmarks whose name contains one of them, e.g. benchmark.bat receiveShot
+ECHO "Running benchmarks..."
+java -cp %BENCHDIR% %MAINCLASSBIN% %*
+
+ECHO "Script execution completed."
+PAUSE
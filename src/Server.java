@@ -1,16 +1,20 @@
-
+import control.ConsoleListener;
 import control.Control;
+import control.ServerConfig;
 import view.View;
-import model.Model;
 
 public class Server {
     public static void main(String[] args) throws Exception {
 
-        View view = new View();
-
-        Model model = new Model();
+        ServerConfig config = ServerConfig.fromArgs(args);
 
-        Control control = new Control(view, model);
+        if (config.isHeadless()) {
+            // Nothing below loads AWT, so this runs on machines without a display
+            Control control = new Control(new ConsoleListener());
+            control.start(config.getPort(), config.getDimension());
+        } else {
+            View.open(config);
+        }
 
     }
 }
@@ -0,0 +1,68 @@
+package benchmark;
+
+/**
+ * The Benchmark class describes one measured operation. The harness calls
+ * {@link #setUp()} before every batch, outside the measurement, and then
+ * {@link #run(int)} once for every operation of the batch.
+ */
+public abstract class Benchmark {
+
+    private final String name;
+
+    /**
+     * Constructs a Benchmark.
+     *
+     * @param name The name the results are reported under.
+     */
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name the results are reported under.
+     *
+     * @return The name of the benchmark.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares the state of the next batch. Nothing done here is measured.
+     *
+     * @throws Exception If the state cannot be prepared.
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Gets the number of operations in a batch. Operations that consume their
+     * state, such as shots on a board, use batches as long as that state lasts.
+     *
+     * @return The number of times {@link #run(int)} is called after each
+     *         {@link #setUp()}.
+     */
+    public int batchSize() {
+        return 1;
+    }
+
+    /**
+     * Tells whether the operation must not allocate once warmed up. The
+     * harness fails when such a benchmark allocates.
+     *
+     * @return {@code true} if the operation is expected to allocate nothing.
+     */
+    public boolean isAllocationFree() {
+        return false;
+    }
+
+    /**
+     * Performs one operation.
+     *
+     * @param index The position of the operation in its batch.
+     * @return A value derived from the result, so the work cannot be optimized
+     *         away.
+     * @throws Exception If the operation fails.
+     */
+    public abstract int run(int index) throws Exception;
+}
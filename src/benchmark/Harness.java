@@ -0,0 +1,215 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Harness class runs the benchmarks of the server and prints their
+ * throughput and allocation rate. Each benchmark is warmed up, then measured
+ * over several timed iterations. The allocated bytes are counted for the
+ * measuring thread only, so they are not blurred by garbage collection, and
+ * the bytes taken by reading the counter itself are left out.
+ * <p>
+ * A benchmark that is {@linkplain Benchmark#isAllocationFree() allocation
+ * free} fails the run, with exit status 1, if it allocates a byte or more per
+ * operation. Stray allocations that happen once in an iteration, such as a
+ * deoptimization, stay far below that.
+ * <p>
+ * The arguments select the benchmarks whose name contains one of them. The
+ * {@code benchmark.warmups}, {@code benchmark.iterations} and
+ * {@code benchmark.time} system properties set the number of warm-up and
+ * measured iterations and the length of each iteration in milliseconds.
+ */
+public class Harness {
+
+    private final int warmups;
+    private final int iterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads;
+    private final long probeBytes;
+    private volatile int sink;
+
+    /**
+     * Constructs a Harness.
+     *
+     * @param warmups         The number of iterations run before measuring.
+     * @param iterations      The number of measured iterations.
+     * @param iterationMillis The length of each iteration in milliseconds.
+     */
+    public Harness(int warmups, int iterations, long iterationMillis) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        this.probeBytes = calibrate();
+    }
+
+    /**
+     * Measures the bytes allocated by reading the allocation counter, which
+     * are otherwise counted once in every batch.
+     *
+     * @return The bytes allocated between two readings of the counter.
+     */
+    private long calibrate() {
+        long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            least = Math.min(least, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return least;
+    }
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args Parts of the names of the benchmarks to run, or none to run
+     *             them all.
+     * @throws Exception If a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(ModelBenchmarks.all());
+        benchmarks.addAll(WireBenchmarks.all());
+
+        Harness harness = new Harness(Integer.getInteger("benchmark.warmups", 5),
+                Integer.getInteger("benchmark.iterations", 10), Long.getLong("benchmark.time", 200L));
+        System.out.printf("%-36s %14s %12s %12s%n", "Benchmark", "ops/s", "error", "B/op");
+        List<String> allocating = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            if (isSelected(benchmark, args)) {
+                Result result = harness.measure(benchmark);
+                result.print();
+                if (benchmark.isAllocationFree() && result.getBytesPerOperation() >= 1) {
+                    allocating.add(benchmark.getName());
+                }
+            }
+        }
+        if (!allocating.isEmpty()) {
+            System.out.println("Allocating in allocation-free benchmarks: " + allocating);
+            System.exit(1);
+        }
+    }
+
+    private static boolean isSelected(Benchmark benchmark, String[] filters) {
+        if (filters.length == 0) {
+            return true;
+        }
+        for (String filter : filters) {
+            if (benchmark.getName().contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Warms up and measures a benchmark.
+     *
+     * @param benchmark The benchmark to measure.
+     * @return The measured throughput and allocation rate.
+     * @throws Exception If the benchmark fails.
+     */
+    public Result measure(Benchmark benchmark) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            iterate(benchmark);
+        }
+
+        double[] throughputs = new double[iterations];
+        long operations = 0;
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] iteration = iterate(benchmark);
+            throughputs[i] = iteration[0] * 1e9 / iteration[1];
+            operations += iteration[0];
+            allocated += iteration[2];
+        }
+        return new Result(benchmark.getName(), throughputs, (double) allocated / operations);
+    }
+
+    /**
+     * Runs batches of a benchmark for the length of one iteration.
+     *
+     * @param benchmark The benchmark to run.
+     * @return The number of operations, the measured nanoseconds and the bytes
+     *         allocated by the operations.
+     * @throws Exception If the benchmark fails.
+     */
+    private long[] iterate(Benchmark benchmark) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long operations = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        int checksum = 0;
+        while (elapsed < iterationNanos) {
+            benchmark.setUp();
+            int batchSize = benchmark.batchSize();
+
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < batchSize; i++) {
+                checksum += benchmark.run(i);
+            }
+            elapsed += System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore - probeBytes;
+            operations += batchSize;
+        }
+        sink = checksum;
+        return new long[] { operations, elapsed, allocated };
+    }
+
+    /**
+     * The Result class holds the measurements of one benchmark.
+     */
+    public static class Result {
+
+        private final String name;
+        private final double throughput;
+        private final double error;
+        private final double bytesPerOperation;
+
+        Result(String name, double[] throughputs, double bytesPerOperation) {
+            this.name = name;
+            this.bytesPerOperation = bytesPerOperation;
+
+            double sum = 0;
+            for (double throughput : throughputs) {
+                sum += throughput;
+            }
+            this.throughput = sum / throughputs.length;
+
+            double squares = 0;
+            for (double throughput : throughputs) {
+                squares += (throughput - this.throughput) * (throughput - this.throughput);
+            }
+            // Half-width of a 99.9% confidence interval, as reported by JMH
+            this.error = throughputs.length < 2 ? Double.NaN
+                    : 3.291 * Math.sqrt(squares / (throughputs.length - 1)) / Math.sqrt(throughputs.length);
+        }
+
+        /**
+         * Gets the mean throughput over the measured iterations.
+         *
+         * @return The operations per second.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * Gets the heap allocated by each operation.
+         *
+         * @return The bytes allocated per operation, 0 for an allocation-free
+         *         path.
+         */
+        public double getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+
+        void print() {
+            System.out.printf("%-36s %14.1f %12.1f %12.1f%n", name, throughput, error, bytesPerOperation);
+        }
+    }
+}
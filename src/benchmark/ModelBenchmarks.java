@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import miscellaneous.Misc;
+import model.Board;
+import model.Model;
+
+/**
+ * The ModelBenchmarks class measures the game model: placing the ships of a
+ * match, resolving shots and computing board health.
+ */
+public class ModelBenchmarks {
+
+    /** The dimension used by the benchmarks that do not vary it. */
+    static final int DIMENSION = 12;
+    private static final long SEED = 42;
+
+    private ModelBenchmarks() {
+    }
+
+    /**
+     * Creates every model benchmark.
+     *
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int dimension = 1; dimension <= Misc.DIMENSION.length; dimension++) {
+            benchmarks.add(randomizeShips(dimension));
+        }
+        benchmarks.add(receiveShot(true));
+        benchmarks.add(receiveShot(false));
+        benchmarks.add(getBoardHealth());
+        return benchmarks;
+    }
+
+    /**
+     * Measures the placement of both fleets of a match.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The benchmark.
+     */
+    static Benchmark randomizeShips(int dimension) {
+        Model model = new Model();
+        model.setDimension(dimension);
+        model.setSeed(SEED);
+        return new Benchmark("randomizeShips:d=" + dimension) {
+            @Override
+            public int run(int index) {
+                model.randomizeShips();
+                return model.getRandomizedShips(1).length;
+            }
+        };
+    }
+
+    /**
+     * Measures shots on the first board. A batch fires once at every cell that
+     * holds a ship, or at every empty cell, of a fresh board.
+     *
+     * @param hit {@code true} to fire at ships, {@code false} to fire at water.
+     * @return The benchmark.
+     */
+    static Benchmark receiveShot(boolean hit) {
+        return new Benchmark("receiveShot:" + (hit ? "hit" : "miss")) {
+            private final int size = DIMENSION * 2;
+            private final int[] rows = new int[size * size];
+            private final int[] cols = new int[size * size];
+            private int count;
+            private Model model;
+
+            @Override
+            public void setUp() {
+                model = newModel();
+                Board board = new Board(DIMENSION, model.getRandomizedShips(1));
+                count = 0;
+                for (int row = 1; row <= size; row++) {
+                    for (int col = 1; col <= size; col++) {
+                        if ((board.shipAt(row, col) != Board.MISSED) == hit) {
+                            rows[count] = row;
+                            cols[count++] = col;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public int batchSize() {
+                return count;
+            }
+
+            @Override
+            public boolean isAllocationFree() {
+                return true;
+            }
+
+            @Override
+            public int run(int index) {
+                return model.receiveShot(1, rows[index], cols[index]) ? 1 : 0;
+            }
+        };
+    }
+
+    /**
+     * Measures the health of a board halfway through a match.
+     *
+     * @return The benchmark.
+     */
+    static Benchmark getBoardHealth() {
+        Model model = newModel();
+        int size = DIMENSION * 2;
+        for (int row = 1; row <= DIMENSION; row++) {
+            for (int col = 1; col <= size; col++) {
+                model.receiveShot(1, row, col);
+                model.receiveShot(2, row, col);
+            }
+        }
+        return new Benchmark("getBoardHealth") {
+            @Override
+            public int batchSize() {
+                return 1024;
+            }
+
+            @Override
+            public boolean isAllocationFree() {
+                return true;
+            }
+
+            @Override
+            public int run(int index) {
+                return model.getBoardHealth(1 + (index & 1));
+            }
+        };
+    }
+
+    /**
+     * Creates a model with the ships of both boards placed.
+     *
+     * @return The model, at the benchmark dimension.
+     */
+    static Model newModel() {
+        Model model = new Model();
+        model.setDimension(DIMENSION);
+        model.setSeed(SEED);
+        model.randomizeShips();
+        return model;
+    }
+}
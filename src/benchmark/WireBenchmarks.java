@@ -0,0 +1,221 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import control.BinaryCodec;
+import control.BufferPool;
+import control.Codec;
+import control.Player;
+import control.Protocol;
+import control.ResponseBuffer;
+import control.SerializedCodec;
+import control.Session;
+import control.Turn;
+
+/**
+ * The WireBenchmarks class measures the encoding of shot results in every
+ * protocol the server speaks, and the whole path of a move on a binary
+ * connection. A batch sends the results of a whole match, so the cost of the
+ * growing game progress is included.
+ */
+public class WireBenchmarks {
+
+    private WireBenchmarks() {
+    }
+
+    /**
+     * Creates every wire benchmark.
+     *
+     * @return The benchmarks.
+     */
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(requestShot());
+        benchmarks.add(codecTurn("writeTurn:serialized", false));
+        benchmarks.add(codecTurn("writeTurn:binary", true));
+        benchmarks.add(new MoveBenchmark());
+        return benchmarks;
+    }
+
+    /**
+     * Measures the response to a single-shot request, which opens a new object
+     * stream and sends the whole game progress, collected in one buffer.
+     *
+     * @return The benchmark.
+     */
+    static Benchmark requestShot() {
+        return new MatchBenchmark("writeTurn:request") {
+            private final BufferPool buffers = new BufferPool(1);
+
+            @Override
+            public int run(int index) throws IOException {
+                Turn turn = turns.get(index);
+                ResponseBuffer buffer = buffers.take();
+                SerializedCodec.writeResponse(turn, session, buffer);
+                buffer.sendTo(out);
+                buffers.release(buffer);
+                return turn.getMoveCount();
+            }
+        };
+    }
+
+    /**
+     * Measures the responses of a persistent connection.
+     *
+     * @param name   The name of the benchmark.
+     * @param binary {@code true} for protocol version 2, {@code false} for
+     *               version 1.
+     * @return The benchmark.
+     */
+    static Benchmark codecTurn(String name, boolean binary) {
+        return new MatchBenchmark(name) {
+            private Codec codec;
+
+            @Override
+            public void setUp() throws IOException {
+                super.setUp();
+                codec = binary ? new BinaryCodec(null, out) : new SerializedCodec(null, out, new BufferPool(1));
+                codec.writeGame(player);
+            }
+
+            @Override
+            public boolean isAllocationFree() {
+                return binary;
+            }
+
+            @Override
+            public int run(int index) throws IOException {
+                Turn turn = turns.get(index);
+                codec.writeTurn(turn);
+                return turn.getMoveCount();
+            }
+        };
+    }
+
+    /**
+     * The MatchBenchmark class plays a whole match in its set-up and keeps the
+     * outcome of every shot, to be encoded by the batch.
+     */
+    private abstract static class MatchBenchmark extends Benchmark {
+
+        protected final OutputStream out = OutputStream.nullOutputStream();
+        protected final List<Turn> turns = new ArrayList<>();
+        protected Session session;
+        protected Player player;
+
+        MatchBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp() throws IOException {
+            session = new Session(1, ModelBenchmarks.DIMENSION, ModelBenchmarks.newModel());
+            player = new Player(session, session.addPlayer());
+            session.addPlayer();
+
+            // Both players sweep the opponent's board row by row
+            turns.clear();
+            int size = ModelBenchmarks.DIMENSION * 2;
+            for (int cell = 0; cell < size * size * 2; cell++) {
+                int targetId = session.getCurrentTargetId();
+                Turn turn = session.playTurn(targetId, cell / 2 / size + 1, cell / 2 % size + 1);
+                turns.add(turn);
+                if (turn.getWinner() != 0) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public int batchSize() {
+            return turns.size();
+        }
+    }
+
+    /**
+     * The MoveBenchmark class measures a move as a binary connection serves
+     * it: the shot frame is decoded, played on the match and answered with the
+     * moves the shooter has not acknowledged. The frames of both players are
+     * recorded once, from a match played the same way, and a batch plays the
+     * whole match again.
+     */
+    private static class MoveBenchmark extends Benchmark {
+
+        private final OutputStream out = OutputStream.nullOutputStream();
+        private final byte[][] shots = new byte[2][];
+        private final BinaryCodec[] codecs = new BinaryCodec[2];
+        private final Turn[] lastTurns = { new Turn(), new Turn() };
+        private final int moveCount;
+        private Session session;
+
+        MoveBenchmark() {
+            super("move:binary");
+            Session match = new Session(1, ModelBenchmarks.DIMENSION, ModelBenchmarks.newModel());
+            match.addPlayer();
+            match.addPlayer();
+            ByteArrayOutputStream[] frames = { new ByteArrayOutputStream(), new ByteArrayOutputStream() };
+
+            // Both players sweep the opponent's board row by row, acknowledging every move
+            int size = ModelBenchmarks.DIMENSION * 2;
+            int moves = 0;
+            for (int cell = 0; cell < size * size * 2; cell++) {
+                int targetId = match.getCurrentTargetId();
+                int row = cell / 2 / size + 1;
+                int col = cell / 2 % size + 1;
+                DataOutputStream frame = new DataOutputStream(frames[targetId == 2 ? 0 : 1]);
+                try {
+                    frame.writeShort(8);
+                    frame.writeByte(Protocol.SHOT);
+                    frame.writeByte(targetId);
+                    frame.writeByte(row);
+                    frame.writeByte(col);
+                    frame.writeInt(moves);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                moves++;
+                if (match.playTurn(targetId, row, col).getWinner() != 0) {
+                    break;
+                }
+            }
+            shots[0] = frames[0].toByteArray();
+            shots[1] = frames[1].toByteArray();
+            moveCount = moves;
+        }
+
+        @Override
+        public void setUp() throws IOException {
+            session = new Session(1, ModelBenchmarks.DIMENSION, ModelBenchmarks.newModel());
+            for (int i = 0; i < 2; i++) {
+                codecs[i] = new BinaryCodec(new ByteArrayInputStream(shots[i]), out);
+                codecs[i].writeGame(new Player(session, session.addPlayer()));
+            }
+        }
+
+        @Override
+        public int batchSize() {
+            return moveCount;
+        }
+
+        @Override
+        public boolean isAllocationFree() {
+            return true;
+        }
+
+        @Override
+        public int run(int index) throws IOException {
+            // The first player shoots first, and every shot of the sweep is valid
+            BinaryCodec codec = codecs[index & 1];
+            codec.readShot();
+            Turn turn = session.playTurn(codec.getTargetId(), codec.getRow(), codec.getCol(), lastTurns[index & 1]);
+            codec.writeTurn(turn);
+            return turn.getMoveCount();
+        }
+    }
+}
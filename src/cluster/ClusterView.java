@@ -0,0 +1,148 @@
+package cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ClusterView class is what one node knows of its cluster: the ring of
+ * the members, the epoch the ring was formed in, and which member the node is.
+ * <p>
+ * Game IDs carry the epoch they were handed out in, in their upper
+ * {@link #EPOCH_BITS} bits below the sign, and the rest is a sequence number of
+ * the node. A node only hands out the IDs that the ring of its epoch gives to
+ * itself, so the {@link Router} finds the node hosting a match from the ID
+ * alone, by asking the ring of the ID's epoch. When a node joins or leaves, new
+ * matches are spread over the new ring while those already running stay where
+ * they are and are still found through the ring they were started under.
+ * Epoch 0 is never used by a cluster: it is the epoch of the plain IDs of a
+ * node that is not part of one.
+ */
+public final class ClusterView {
+
+    /** The number of bits of a game ID holding its epoch. */
+    public static final int EPOCH_BITS = 5;
+    /** The number of epochs before they are used again. */
+    public static final int EPOCHS = 1 << EPOCH_BITS;
+    private static final int SEQUENCE_BITS = Integer.SIZE - 1 - EPOCH_BITS;
+    private static final int SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+
+    private final int epoch;
+    private final HashRing ring;
+    private final int self;
+
+    /**
+     * Constructs a ClusterView.
+     *
+     * @param epoch The epoch of the ring, from 1 to {@link #EPOCHS} - 1.
+     * @param ring  The ring of the members.
+     * @param self  The index of the node on the ring.
+     */
+    public ClusterView(int epoch, HashRing ring, int self) {
+        this.epoch = epoch;
+        this.ring = ring;
+        this.self = self;
+    }
+
+    /**
+     * Builds a game ID of this view's epoch.
+     *
+     * @param sequence The sequence number of the node, of which only the lower
+     *                 bits are kept.
+     * @return The game ID.
+     */
+    public int toGameId(int sequence) {
+        return epoch << SEQUENCE_BITS | sequence & SEQUENCE_MASK;
+    }
+
+    /**
+     * Checks whether a game ID belongs to this node in this view.
+     *
+     * @param gameId The game ID.
+     * @return {@code true} if the ring gives the ID to this node.
+     */
+    public boolean owns(int gameId) {
+        return ring.ownerOf(gameId) == self;
+    }
+
+    /**
+     * Gets the epoch a game ID was handed out in.
+     *
+     * @param gameId The game ID.
+     * @return The epoch, 0 for an ID of a node outside a cluster.
+     */
+    public static int epochOf(int gameId) {
+        return gameId >>> SEQUENCE_BITS;
+    }
+
+    /**
+     * Writes the view, as sent by the router to a node after
+     * {@link control.Control#CLUSTER}: the epoch, the index of the node, the
+     * member count (short) and the address of every member.
+     *
+     * @param outputStream The stream to the node.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(epoch);
+        outputStream.writeInt(self);
+        outputStream.writeShort(ring.size());
+        for (int i = 0; i < ring.size(); i++) {
+            outputStream.writeUTF(ring.getMember(i));
+        }
+    }
+
+    /**
+     * Reads a view written by {@link #write(DataOutputStream)}. An epoch of 0
+     * is only a probe of the node by the router, with nothing after it.
+     *
+     * @param inputStream The stream from the router.
+     * @return The view, or {@code null} for a probe.
+     * @throws IOException If an I/O error occurs or the view is not valid.
+     */
+    public static ClusterView read(DataInputStream inputStream) throws IOException {
+        int epoch = inputStream.readInt();
+        if (epoch == 0) {
+            return null;
+        }
+        int self = inputStream.readInt();
+        int count = inputStream.readUnsignedShort();
+        List<String> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(inputStream.readUTF());
+        }
+        if (epoch < 1 || epoch >= EPOCHS || self < 0 || self >= count) {
+            throw new IOException("Invalid cluster view: epoch " + epoch + ", member " + self + " of " + count);
+        }
+        return new ClusterView(epoch, new HashRing(members), self);
+    }
+
+    /**
+     * Gets the epoch of the view, which the game IDs handed out under it carry.
+     *
+     * @return The epoch.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Gets the ring of the nodes of the view.
+     *
+     * @return The ring.
+     */
+    public HashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Gets the node the view was sent to.
+     *
+     * @return The index of the node among the members of the ring.
+     */
+    public int getSelf() {
+        return self;
+    }
+}
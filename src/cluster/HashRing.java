@@ -0,0 +1,113 @@
+package cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The HashRing class maps game IDs to the nodes of a cluster by consistent
+ * hashing. Every node is placed on a ring of 32-bit hashes at
+ * {@link #VIRTUAL_NODES} points derived from its address, and a key belongs to
+ * the node of the first point at or after the key's own hash, wrapping around
+ * the ring. Adding or removing a node only moves the keys next to its points,
+ * about one key in the number of nodes, while the other keys keep their owner.
+ * <p>
+ * A ring never changes once built, so it can be read by any number of threads.
+ */
+public final class HashRing {
+
+    /** The number of points of every node on the ring. */
+    public static final int VIRTUAL_NODES = 128;
+
+    private final String[] members;
+    private final int[] points;
+    private final int[] owners;
+
+    /**
+     * Constructs a ring over the given nodes.
+     *
+     * @param members The addresses of the nodes, each {@code host:port}.
+     * @throws IllegalArgumentException If there is no node.
+     */
+    public HashRing(List<String> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        this.members = members.toArray(new String[0]);
+
+        // Sorting the points with their owner in the low half keeps both in step
+        long[] placed = new long[this.members.length * VIRTUAL_NODES];
+        for (int member = 0; member < this.members.length; member++) {
+            long seed = (long) this.members[member].hashCode() << 32;
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                int point = (int) (mix(seed | i) >>> 32);
+                placed[member * VIRTUAL_NODES + i] = (long) point << 32 | member;
+            }
+        }
+        Arrays.sort(placed);
+        points = new int[placed.length];
+        owners = new int[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = (int) (placed[i] >> 32);
+            owners[i] = (int) placed[i];
+        }
+    }
+
+    /**
+     * Gets the node owning a key.
+     *
+     * @param key The key, such as a game ID.
+     * @return The index of the node in the list the ring was built from.
+     */
+    public int ownerOf(int key) {
+        int hash = (int) (mix(key) >>> 32);
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /**
+     * Gets the address of a node.
+     *
+     * @param index The index of the node.
+     * @return The address, {@code host:port}.
+     */
+    public String getMember(int index) {
+        return members[index];
+    }
+
+    /**
+     * Gets the addresses of the nodes, in the order the ring was built from.
+     *
+     * @return A copy of the addresses.
+     */
+    public List<String> getMembers() {
+        return List.of(members);
+    }
+
+    /**
+     * Gets the number of nodes on the ring.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * Spreads the bits of a value over the whole of a long, so that nearby
+     * keys and addresses land far apart on the ring.
+     *
+     * @param value The value.
+     * @return The mixed value.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,191 @@
+package cluster;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import control.Control;
+
+/**
+ * The Membership class tracks which nodes of a cluster are up and forms the
+ * ring of those that are. Every node is probed periodically with a
+ * {@link Control#CLUSTER} request; when the nodes answering differ from the
+ * members of the ring, a ring of the new members is formed in the next epoch
+ * and sent to each of them. A member that answers with another epoch than the
+ * current one, as after a restart, is sent the current ring again.
+ * <p>
+ * The ring of every recent epoch is kept, so a match is found through the
+ * ring it was started under for the next {@link ClusterView#EPOCHS} - 2
+ * changes of members. New matches only go to the members of the current ring,
+ * and only once each of them has been sent the ring.
+ */
+public class Membership {
+
+    private final List<String> nodes;
+    private final int timeoutMillis;
+    private final AtomicReferenceArray<HashRing> rings = new AtomicReferenceArray<>(ClusterView.EPOCHS);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "cluster-membership");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile HashRing current;
+    private int epoch;
+
+    /**
+     * Constructs a Membership.
+     *
+     * @param nodes         The addresses of every node that may join the
+     *                      cluster, each {@code host:port}.
+     * @param timeoutMillis The time a node has to accept a connection and
+     *                      answer a probe, in milliseconds.
+     */
+    public Membership(List<String> nodes, int timeoutMillis) {
+        this.nodes = List.copyOf(nodes);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Probes the nodes now, then periodically on a thread of its own.
+     *
+     * @param periodMillis The time between two probes of every node, in
+     *                     milliseconds.
+     */
+    public void start(long periodMillis) {
+        check();
+        timer.scheduleWithFixedDelay(this::check, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probes every node and forms a new ring if the nodes that are up are not
+     * the members of the current one.
+     */
+    private void check() {
+        try {
+            List<String> up = new ArrayList<>();
+            List<Integer> epochs = new ArrayList<>();
+            for (String node : nodes) {
+                try {
+                    epochs.add(send(node, null));
+                    up.add(node);
+                } catch (IOException e) {
+                    // A node that does not answer is down
+                }
+            }
+
+            HashRing ring = current;
+            if (up.isEmpty()) {
+                if (ring != null) {
+                    current = null;
+                    System.out.println("No node is up");
+                }
+                return;
+            }
+            if (ring == null || !ring.getMembers().equals(up)) {
+                epoch = epoch % (ClusterView.EPOCHS - 1) + 1;
+                ring = new HashRing(up);
+                // Routable as soon as a node may hand out IDs of the epoch
+                rings.set(epoch, ring);
+                sendRing(ring, null);
+                current = ring;
+                System.out.printf("Epoch %d: %s%n", epoch, up);
+            } else {
+                sendRing(ring, epochs);
+            }
+        } catch (RuntimeException e) {
+            // A failed check must not cancel the next ones
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends the ring of the current epoch to its members.
+     *
+     * @param ring   The ring.
+     * @param epochs The epoch each member answered the probe with, to only
+     *               send the ring to those that do not have it, or
+     *               {@code null} to send it to every member.
+     */
+    private void sendRing(HashRing ring, List<Integer> epochs) {
+        for (int i = 0; i < ring.size(); i++) {
+            if (epochs != null && epochs.get(i) == epoch) {
+                continue;
+            }
+            try {
+                send(ring.getMember(i), new ClusterView(epoch, ring, i));
+            } catch (IOException e) {
+                // Left out of the next ring
+                System.out.println("Node " + ring.getMember(i) + " did not take epoch " + epoch + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Sends a view or a probe to a node and waits for its answer.
+     *
+     * @param node The address of the node.
+     * @param view The view, or {@code null} to probe the node.
+     * @return The epoch of the node before the request.
+     * @throws IOException If the node cannot be reached or does not answer in
+     *                     time.
+     */
+    private int send(String node, ClusterView view) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(toAddress(node), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            outputStream.writeInt(Control.CLUSTER);
+            if (view == null) {
+                outputStream.writeInt(0);
+            } else {
+                view.write(outputStream);
+            }
+            outputStream.flush();
+            return new DataInputStream(socket.getInputStream()).readInt();
+        }
+    }
+
+    /**
+     * Gets the node hosting a match.
+     *
+     * @param gameId The ID of the match.
+     * @return The address of the node, or {@code null} if the match was not
+     *         started under a ring still known.
+     */
+    public String ownerOf(int gameId) {
+        HashRing ring = rings.get(ClusterView.epochOf(gameId));
+        return ring == null ? null : ring.getMember(ring.ownerOf(gameId));
+    }
+
+    /**
+     * Gets the node a new match goes to.
+     *
+     * @param key The key of the match, spread over the current ring.
+     * @return The address of the node, or {@code null} if no node is up.
+     */
+    public String nodeFor(int key) {
+        HashRing ring = current;
+        return ring == null ? null : ring.getMember(ring.ownerOf(key));
+    }
+
+    /**
+     * Parses the address of a node.
+     *
+     * @param node The address, {@code host:port}.
+     * @return The socket address.
+     */
+    static InetSocketAddress toAddress(String node) {
+        int separator = node.lastIndexOf(':');
+        return new InetSocketAddress(node.substring(0, separator), Integer.parseInt(node.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,264 @@
+package cluster;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import control.Control;
+import control.ExecutionMode;
+import control.Protocol;
+import control.ServerConfig;
+import model.Model;
+
+/**
+ * The Router class is the front of a cluster of servers. Players and
+ * spectators connect to it as to a single server, and each connection is
+ * forwarded to the node that hosts its match: the router reads the start of
+ * the request, opens a connection to the node, replays what it has read and
+ * then copies the bytes both ways until either side closes. None of the
+ * clients follows redirects, so forwarding is the only way to reach them all.
+ * <ul>
+ * <li>A {@link Control#SHOT} request and a {@link Protocol#WATCH} frame carry
+ * a game ID, and go to the node of that match, found by the
+ * {@link Membership} through the ring of the ID's epoch.</li>
+ * <li>A join starts a new match, and goes to the node the current ring gives
+ * to a key made of the dimension and the number of joins of that dimension
+ * halved, so two players joining one after the other land on the same node
+ * and are paired there. A player left alone on a node is paired by that
+ * node's matchmaker, or given its bot.</li>
+ * </ul>
+ * A binary client may wait for the hello before sending its first frame, so
+ * the router answers the hello itself and drops the one from the node. The
+ * heartbeats a client sends before its first frame are answered by the router
+ * too, and the connection is routed on the frame that follows them.
+ * <p>
+ * The settings are given as {@code --name=value} arguments:
+ * <ul>
+ * <li>{@code port}: the port players connect to, 5000 by default;</li>
+ * <li>{@code nodes}: the addresses of the nodes, as a comma-separated list
+ * of {@code host:port}, each started with {@code --cluster};</li>
+ * <li>{@code probe}: the milliseconds between two probes of the nodes, 1000
+ * by default;</li>
+ * <li>{@code timeout}: the milliseconds a node has to answer a probe, 500 by
+ * default.</li>
+ * </ul>
+ */
+public class Router {
+
+    private static final int BACKLOG = 1024;
+    /** The frame answering a heartbeat: its length, 1, and its opcode. */
+    private static final byte[] HEARTBEAT_ACK = { 0, 1, Protocol.HEARTBEAT_ACK };
+
+    private final int port;
+    private final Membership membership;
+    private final long probeMillis;
+    private final int timeoutMillis;
+    private final ExecutorService connectionExecutor = ExecutionMode.VIRTUAL.newConnectionExecutor();
+    private final AtomicIntegerArray joins = new AtomicIntegerArray(Model.MAX_DIMENSION + 1);
+    private final AtomicInteger botJoins = new AtomicInteger();
+
+    /**
+     * Constructs a Router from its settings.
+     *
+     * @param settings The settings, keyed by name.
+     * @throws IllegalArgumentException If no node is given.
+     */
+    public Router(Properties settings) {
+        String nodes = settings.getProperty("nodes", "");
+        if (nodes.isBlank()) {
+            throw new IllegalArgumentException("The nodes must be given as --nodes=host:port,...");
+        }
+        port = Integer.parseInt(settings.getProperty("port", "5000"));
+        probeMillis = Long.parseLong(settings.getProperty("probe", "1000"));
+        timeoutMillis = Integer.parseInt(settings.getProperty("timeout", "500"));
+        membership = new Membership(Arrays.asList(nodes.split("\\s*,\\s*")), timeoutMillis);
+    }
+
+    /**
+     * Runs the router.
+     *
+     * @param args The settings, each {@code --name=value}.
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        new Router(ServerConfig.parseArgs(args, "")).run();
+    }
+
+    /**
+     * Tracks the nodes and forwards every connection until the socket is
+     * closed.
+     *
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public void run() throws IOException {
+        membership.start(probeMillis);
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG)) {
+            System.out.println("Routing players on port " + port);
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> route(socket));
+            }
+        }
+    }
+
+    /**
+     * Forwards a connection to the node of its match, and copies the node's
+     * answers back until the node closes the connection.
+     *
+     * @param client The connection of the player or spectator.
+     */
+    private void route(Socket client) {
+        Socket node = null;
+        try {
+            client.setTcpNoDelay(true);
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            DataOutputStream headStream = new DataOutputStream(head);
+            boolean helloAnswered = false;
+            String address;
+
+            int request = inputStream.readInt();
+            headStream.writeInt(request);
+            if (Protocol.isHello(request) && (request & 0xFFFF) >= Protocol.VERSION_BINARY) {
+                DataOutputStream outputStream = new DataOutputStream(client.getOutputStream());
+                outputStream.writeInt(Protocol.hello(Math.min(request & 0xFFFF, Protocol.VERSION)));
+                helloAnswered = true;
+                byte[] frame = readFirstFrame(inputStream, outputStream);
+                headStream.writeShort(frame.length);
+                headStream.write(frame);
+                address = routeFrame(frame);
+            } else if (request == Control.SHOT) {
+                int gameId = inputStream.readInt();
+                headStream.writeInt(gameId);
+                address = membership.ownerOf(gameId);
+            } else if (request == Control.CLUSTER) {
+                // Only the router itself sends views to the nodes
+                address = null;
+            } else {
+                address = membership.nodeFor(pairKey(0));
+            }
+            if (address == null) {
+                return;
+            }
+
+            node = new Socket();
+            node.connect(Membership.toAddress(address), timeoutMillis);
+            node.setTcpNoDelay(true);
+            head.writeTo(node.getOutputStream());
+            InputStream nodeStream = node.getInputStream();
+            if (helloAnswered) {
+                new DataInputStream(nodeStream).readInt();
+            }
+
+            Socket target = node;
+            connectionExecutor.execute(() -> copyRequests(inputStream, client, target));
+            nodeStream.transferTo(client.getOutputStream());
+        } catch (ConnectException e) {
+            // The node has left since the last probe, and will be left out of the next ring
+            System.err.println("Node unreachable: " + e.getMessage());
+        } catch (IOException e) {
+            // A broken connection only affects its own match
+            e.printStackTrace();
+        } finally {
+            close(client);
+            if (node != null) {
+                close(node);
+            }
+        }
+    }
+
+    /**
+     * Reads the first frame of a binary client that is not a heartbeat. The
+     * heartbeats before it are answered by the router, since no node has been
+     * chosen yet.
+     *
+     * @param inputStream  The stream from the client.
+     * @param outputStream The stream to the client.
+     * @return The opcode and payload of the frame.
+     * @throws IOException If an error occurs during communication.
+     */
+    private static byte[] readFirstFrame(DataInputStream inputStream, DataOutputStream outputStream)
+            throws IOException {
+        while (true) {
+            byte[] frame = new byte[inputStream.readUnsignedShort()];
+            inputStream.readFully(frame);
+            if (frame.length == 0 || frame[0] != Protocol.HEARTBEAT) {
+                return frame;
+            }
+            outputStream.write(HEARTBEAT_ACK);
+        }
+    }
+
+    /**
+     * Finds the node of the first frame of a binary client.
+     *
+     * @param frame The opcode and payload of the frame.
+     * @return The address of the node, or {@code null} if there is none.
+     */
+    private String routeFrame(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        int opcode = frame.length > 0 ? buffer.get() : 0;
+        if (opcode == Protocol.WATCH && buffer.remaining() >= Integer.BYTES) {
+            return membership.ownerOf(buffer.getInt());
+        }
+        int dimension = buffer.remaining() >= Short.BYTES ? buffer.getShort() & 0xFFFF : 0;
+        if (opcode == Protocol.JOIN_BOT) {
+            return membership.nodeFor(botJoins.getAndIncrement());
+        }
+        return membership.nodeFor(pairKey(dimension));
+    }
+
+    /**
+     * Gets the key of the match of a joining player. The key changes every
+     * second join of a dimension, so two players joining in a row share it.
+     *
+     * @param dimension The dimension asked for, or 0 for the server's.
+     * @return The key.
+     */
+    private int pairKey(int dimension) {
+        if (dimension > Model.MAX_DIMENSION) {
+            dimension = 0;
+        }
+        return (joins.getAndIncrement(dimension) >>> 1) * (Model.MAX_DIMENSION + 1) + dimension;
+    }
+
+    /**
+     * Copies the requests of a client to its node, and passes on the end of
+     * the stream when the client stops sending.
+     *
+     * @param inputStream The stream from the client, after the part already
+     *                    forwarded.
+     * @param client      The connection of the client.
+     * @param node        The connection to the node.
+     */
+    private static void copyRequests(InputStream inputStream, Socket client, Socket node) {
+        try {
+            inputStream.transferTo(node.getOutputStream());
+            node.shutdownOutput();
+        } catch (IOException e) {
+            // The other direction sees the sockets closed
+            close(client);
+            close(node);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
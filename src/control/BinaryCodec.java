@@ -0,0 +1,546 @@
+package control;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import metrics.ServerMetrics;
+import model.Board;
+import model.Model;
+import model.Ship;
+
+/**
+ * The BinaryCodec class speaks protocol versions {@link Protocol#VERSION_BINARY}
+ * and {@link Protocol#VERSION_WIDE}. Every message is a frame made of an
+ * unsigned short length, an opcode byte and the payload. In version 2 cells are
+ * sent as row and column bytes and both fleets fit in the {@link Protocol#GAME}
+ * frame. In version 3 cells are sent as their index on the board, and the
+ * fleets follow in {@link Protocol#FLEET} frames, so boards of any dimension
+ * can be played.
+ * <p>
+ * Instead of the whole game progress, each result is followed by the moves the
+ * client has not received yet, starting from the sequence number the client
+ * last acknowledged. A {@link Protocol#HEARTBEAT} may come before any frame,
+ * and is answered at once.
+ * <p>
+ * A frame the server expects must have one of the lengths of its opcode, and
+ * is read whole before it is parsed, so a malformed frame closes the
+ * connection rather than leaving the stream out of step. Frames of unknown
+ * opcodes are skipped.
+ * <p>
+ * The frame encoders work on a {@link ByteBuffer}, so the same frames are sent
+ * by blocking connections and by the {@link EventLoop}.
+ */
+public class BinaryCodec implements Codec {
+
+    /** The size of the largest frame sent by the server. */
+    public static final int MAX_FRAME = 4096;
+    /** The length of a join frame that asks for a dimension. */
+    static final int JOIN_WITH_DIMENSION = 3;
+    /** The length of a shot frame. */
+    static final int SHOT_WITHOUT_ACK = 4;
+    /** The length of a shot frame that carries an acknowledged sequence number. */
+    static final int SHOT_WITH_ACK = 8;
+    /** The length of a shot frame in protocol version 3. */
+    static final int WIDE_SHOT_WITHOUT_ACK = 6;
+    /** The same length with an acknowledged sequence number. */
+    static final int WIDE_SHOT_WITH_ACK = 10;
+    /** The length of a frame carrying a game ID or a sequence number. */
+    static final int WITH_INT = 1 + Integer.BYTES;
+    /** The largest payload of a frame the server expects. */
+    static final int MAX_REQUEST_PAYLOAD = 32;
+    /** The size of a full moves frame, length included. */
+    static final int MOVES_FRAME_SIZE = 9 + Protocol.MOVES_PER_FRAME * Integer.BYTES;
+    /** The size of a fleet frame holding a single ship, length included. */
+    static final int FLEET_FRAME_MIN_SIZE = 16;
+
+    private static final int FLEET_HEADER_SIZE = 10;
+    private static final int WIDE_SHIP_SIZE = 6;
+
+    private final DataInputStream dataInputStream;
+    private final OutputStream outputStream;
+    private final boolean wide;
+    private final ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME);
+    private final ByteBuffer payload = ByteBuffer.allocate(MAX_REQUEST_PAYLOAD);
+    private final int[] moves = new int[Protocol.MOVES_PER_FRAME];
+    private Session session;
+    private int moveCursor;
+    private int lastOpcode;
+    private int dimension;
+    private int targetId;
+    private int row;
+    private int col;
+    private TimerWheel.Timeout idleTimeout;
+
+    /**
+     * Constructs a BinaryCodec speaking protocol version
+     * {@link Protocol#VERSION_BINARY} on the streams of a connected player.
+     *
+     * @param inputStream  The stream the player's frames are read from.
+     * @param outputStream The stream frames are sent to.
+     */
+    public BinaryCodec(InputStream inputStream, OutputStream outputStream) {
+        this(inputStream, outputStream, Protocol.VERSION_BINARY);
+    }
+
+    /**
+     * Constructs a BinaryCodec on the streams of a connected player.
+     *
+     * @param inputStream  The stream the player's frames are read from.
+     * @param outputStream The stream frames are sent to.
+     * @param version      The negotiated protocol version.
+     */
+    public BinaryCodec(InputStream inputStream, OutputStream outputStream, int version) {
+        this.dataInputStream = new DataInputStream(inputStream);
+        this.outputStream = outputStream;
+        this.wide = version >= Protocol.VERSION_WIDE;
+    }
+
+    @Override
+    public void setIdleTimeout(TimerWheel.Timeout idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public int readJoin() throws IOException {
+        int length = readFrame(Protocol.JOIN, Protocol.WATCH, Protocol.JOIN_BOT);
+        if (lastOpcode == Protocol.WATCH) {
+            return payload.getInt();
+        }
+        dimension = length >= JOIN_WITH_DIMENSION ? payload.getShort() & 0xFFFF : 0;
+        return lastOpcode == Protocol.JOIN_BOT ? AGAINST_BOT : 0;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public void writeGame(Player player) throws IOException {
+        session = player.getSession();
+        frame.clear();
+        encodeGame(frame, player, wide);
+        if (wide) {
+            Model model = session.getModel();
+            writeFleet(1, model.getRandomizedShips(player.getId() == 1 ? 1 : 2));
+            writeFleet(2, model.getRandomizedShips(player.getId() == 1 ? 2 : 1));
+        }
+        sendFrame();
+    }
+
+    /**
+     * Encodes the fleet frames of one board, sending the frame buffer whenever
+     * it is full.
+     *
+     * @param board 1 for the player's fleet, 2 for the opponent's.
+     * @param ships The ships of the board.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void writeFleet(int board, Ship[] ships) throws IOException {
+        int size = session.getDimension() * 2;
+        int from = 0;
+        while (from < ships.length) {
+            if (frame.remaining() < FLEET_FRAME_MIN_SIZE) {
+                sendFrame();
+                frame.clear();
+            }
+            from = encodeFleet(frame, board, ships, from, size);
+        }
+    }
+
+    @Override
+    public void readShot() throws IOException {
+        int length = readFrame(Protocol.SHOT, Protocol.LOG);
+        while (lastOpcode == Protocol.LOG) {
+            moveCursor = payload.getInt();
+            frame.clear();
+            writeMoves(session.getMoveCount());
+            sendFrame();
+            length = readFrame(Protocol.SHOT, Protocol.LOG);
+        }
+        long start = System.nanoTime();
+        targetId = payload.get() & 0xFF;
+        if (wide) {
+            int cell = payload.getInt();
+            int size = session != null ? session.getDimension() * 2 : 0;
+            row = Board.rowOf(cell, size);
+            col = Board.colOf(cell, size);
+        } else {
+            row = payload.get() & 0xFF;
+            col = payload.get() & 0xFF;
+        }
+        if (length >= (wide ? WIDE_SHOT_WITH_ACK : SHOT_WITH_ACK)) {
+            moveCursor = payload.getInt();
+        }
+        ServerMetrics.get().getShotDecode().record(System.nanoTime() - start);
+    }
+
+    @Override
+    public int getTargetId() {
+        return targetId;
+    }
+
+    @Override
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public int getCol() {
+        return col;
+    }
+
+    @Override
+    public void writeTurn(Turn turn) throws IOException {
+        frame.clear();
+        encodeTurn(frame, turn, wide ? session.getDimension() * 2 : 0);
+        if (turn.isValid()) {
+            writeMoves(turn.getMoveCount());
+        } else if (session.isOver()) {
+            encodeMatchOver(frame, session.getWinner());
+        }
+        sendFrame();
+    }
+
+    @Override
+    public void watch(Spectator spectator) throws IOException {
+        if (spectator == null) {
+            frame.clear();
+            encodeMatchOver(frame, 0);
+            sendFrame();
+            return;
+        }
+        session = spectator.getSession();
+        Spectator.Writer writer = new Spectator.Writer() {
+            @Override
+            public void sendMoves(int from, int to) throws IOException {
+                moveCursor = from;
+                frame.clear();
+                writeMoves(to);
+                sendFrame();
+            }
+
+            @Override
+            public void send(byte[] bytes) throws IOException {
+                outputStream.write(bytes);
+                outputStream.flush();
+            }
+        };
+
+        spectator.catchUp(writer);
+        try {
+            while (true) {
+                Broadcast.Frame broadcastFrame = spectator.take();
+                spectator.send(broadcastFrame, writer);
+                if (broadcastFrame.isEnd()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Encodes the moves from the cursor up to a sequence number, sending the
+     * frame buffer whenever it is full.
+     *
+     * @param moveCount The sequence number to stop at.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void writeMoves(int moveCount) throws IOException {
+        moveCursor = Math.max(0, Math.min(moveCursor, moveCount));
+        while (moveCursor < moveCount) {
+            if (frame.remaining() < MOVES_FRAME_SIZE) {
+                sendFrame();
+                frame.clear();
+            }
+            moveCursor = encodeMoves(frame, session, moveCursor, moveCount, moves);
+        }
+    }
+
+    /**
+     * Skips frames until one with an expected opcode is found, and reads its
+     * payload into the payload buffer.
+     *
+     * @param opcode      The opcode that is expected.
+     * @param otherOpcode Another opcode that is expected.
+     * @return The length of the frame, opcode included.
+     * @throws IOException If an error occurs during communication.
+     */
+    private int readFrame(int opcode, int otherOpcode) throws IOException {
+        return readFrame(opcode, otherOpcode, otherOpcode);
+    }
+
+    /**
+     * Skips frames until one with any of three expected opcodes is found,
+     * and reads its payload into the payload buffer. Heartbeats are answered
+     * on the way.
+     *
+     * @param opcode      The opcode that is expected.
+     * @param otherOpcode Another opcode that is expected.
+     * @param thirdOpcode A third opcode that is expected.
+     * @return The length of the frame, opcode included.
+     * @throws IOException If an error occurs during communication, or a frame
+     *                     has a length its opcode does not allow.
+     */
+    private int readFrame(int opcode, int otherOpcode, int thirdOpcode) throws IOException {
+        while (true) {
+            int length = dataInputStream.readUnsignedShort();
+            if (length == 0) {
+                throw new IOException("Invalid frame length 0");
+            }
+            lastOpcode = dataInputStream.readUnsignedByte();
+            if (idleTimeout != null) {
+                idleTimeout.touch();
+            }
+            if (!isKnown(lastOpcode)) {
+                // Frames of later versions are skipped whole
+                dataInputStream.skipNBytes(length - 1);
+                continue;
+            }
+            if (!hasValidLength(lastOpcode, length, wide)) {
+                throw new IOException("Invalid length " + length + " for opcode " + lastOpcode);
+            }
+            payload.clear();
+            dataInputStream.readFully(payload.array(), 0, length - 1);
+            payload.limit(length - 1);
+            if (lastOpcode == opcode || lastOpcode == otherOpcode || lastOpcode == thirdOpcode) {
+                return length;
+            }
+            if (lastOpcode == Protocol.HEARTBEAT) {
+                frame.clear();
+                encodeHeartbeatAck(frame);
+                sendFrame();
+            }
+            // Frames that are not expected now are ignored
+        }
+    }
+
+    /**
+     * Checks whether an opcode is one of the frames a client may send.
+     *
+     * @param opcode The opcode of the frame.
+     * @return {@code true} if the server knows the opcode.
+     */
+    static boolean isKnown(int opcode) {
+        return opcode == Protocol.JOIN || opcode == Protocol.SHOT || opcode == Protocol.LOG
+                || opcode == Protocol.WATCH || opcode == Protocol.JOIN_BOT || opcode == Protocol.HEARTBEAT;
+    }
+
+    /**
+     * Checks the length of a known frame sent by a client against the
+     * lengths its opcode allows.
+     *
+     * @param opcode The opcode of the frame.
+     * @param length The length of the frame, opcode included.
+     * @param wide   {@code true} for protocol version 3.
+     * @return {@code true} if the frame can be parsed by its layout.
+     */
+    static boolean hasValidLength(int opcode, int length, boolean wide) {
+        if (opcode == Protocol.JOIN || opcode == Protocol.JOIN_BOT) {
+            return length == 1 || length == JOIN_WITH_DIMENSION;
+        } else if (opcode == Protocol.SHOT) {
+            return wide ? length == WIDE_SHOT_WITHOUT_ACK || length == WIDE_SHOT_WITH_ACK
+                    : length == SHOT_WITHOUT_ACK || length == SHOT_WITH_ACK;
+        } else if (opcode == Protocol.LOG || opcode == Protocol.WATCH) {
+            return length == WITH_INT;
+        }
+        return length == 1;
+    }
+
+    /**
+     * Sends the frames that have been encoded, in a single write.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    private void sendFrame() throws IOException {
+        outputStream.write(frame.array(), 0, frame.position());
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() {
+        // The frame buffer belongs to the codec
+    }
+
+    /**
+     * Encodes the frame describing the match to a player. In protocol version 3
+     * the fleets are not part of it and must follow in fleet frames.
+     *
+     * @param buffer The buffer the frame is appended to.
+     * @param player The player that has joined.
+     * @param wide   {@code true} to encode protocol version 3.
+     * @throws IOException If the fleets do not fit in a version 2 frame.
+     */
+    static void encodeGame(ByteBuffer buffer, Player player, boolean wide) throws IOException {
+        int id = player.getId();
+        Session session = player.getSession();
+        Model model = session.getModel();
+        Ship[] playerShips = model.getRandomizedShips(id == 1 ? 1 : 2);
+        Ship[] opponentShips = model.getRandomizedShips(id == 1 ? 2 : 1);
+
+        int start = startFrame(buffer, Protocol.GAME);
+        buffer.putInt(session.getGameId());
+        buffer.put((byte) id);
+        if (wide) {
+            buffer.putShort((short) session.getDimension());
+            buffer.putInt(playerShips.length);
+            buffer.putInt(opponentShips.length);
+        } else {
+            if (buffer.remaining() < 5 + (playerShips.length + opponentShips.length) * 4) {
+                throw new IOException("The fleets of dimension " + session.getDimension() + " need protocol version "
+                        + Protocol.VERSION_WIDE);
+            }
+            buffer.put((byte) session.getDimension());
+            encodeFleet(buffer, playerShips);
+            encodeFleet(buffer, opponentShips);
+        }
+        endFrame(buffer, start);
+    }
+
+    /**
+     * Encodes one fleet frame of protocol version 3, with as many ships as fit
+     * in the buffer.
+     *
+     * @param buffer The buffer the frame is appended to.
+     * @param board  1 for the player's fleet, 2 for the opponent's.
+     * @param ships  The ships of the board.
+     * @param from   The index of the first ship to encode.
+     * @param size   The side length of the board.
+     * @return The index of the first ship that was not encoded.
+     */
+    static int encodeFleet(ByteBuffer buffer, int board, Ship[] ships, int from, int size) {
+        int count = Math.min(ships.length - from, (buffer.remaining() - FLEET_HEADER_SIZE) / WIDE_SHIP_SIZE);
+
+        int start = startFrame(buffer, Protocol.FLEET);
+        buffer.put((byte) board);
+        buffer.putInt(from);
+        buffer.putShort((short) count);
+        for (int i = from; i < from + count; i++) {
+            Ship ship = ships[i];
+            buffer.put((byte) ship.getLength());
+            buffer.putInt(Board.toCell(ship.getRow(), ship.getCol(), size));
+            buffer.put((byte) (ship.isHorizontal() ? 1 : 0));
+        }
+        endFrame(buffer, start);
+        return from + count;
+    }
+
+    /**
+     * Encodes the frame with the outcome of a shot.
+     *
+     * @param buffer The buffer the frame is appended to.
+     * @param turn   The outcome of the shot.
+     * @param size   The side length of the board to send cell indexes as in
+     *               protocol version 3, or 0 to send rows and columns.
+     */
+    static void encodeTurn(ByteBuffer buffer, Turn turn, int size) {
+        if (!turn.isValid()) {
+            endFrame(buffer, startFrame(buffer, Protocol.INVALID_SHOT));
+            return;
+        }
+        int start = startFrame(buffer, turn.isHit() ? Protocol.HIT : Protocol.MISSED);
+        buffer.putShort((short) turn.getShipIndex());
+        buffer.put((byte) turn.getShipHealth());
+        if (size > 0) {
+            buffer.putInt(Board.toCell(turn.getPreviousRow(), turn.getPreviousCol(), size));
+        } else {
+            buffer.put((byte) turn.getPreviousRow());
+            buffer.put((byte) turn.getPreviousCol());
+        }
+        buffer.put((byte) (turn.isPreviousHit() ? 1 : 0));
+        buffer.put((byte) turn.getTargetHealth());
+        buffer.put((byte) turn.getPlayerHealth());
+        endFrame(buffer, start);
+    }
+
+    /**
+     * Encodes one frame with moves of a match.
+     *
+     * @param buffer    The buffer the frame is appended to.
+     * @param session   The match the moves belong to.
+     * @param from      The sequence number of the first move.
+     * @param moveCount The sequence number to stop at.
+     * @param moves     A scratch array of {@link Protocol#MOVES_PER_FRAME} ints.
+     * @return The sequence number of the first move that was not encoded.
+     */
+    static int encodeMoves(ByteBuffer buffer, Session session, int from, int moveCount, int[] moves) {
+        int count = Math.min(session.copyMoves(from, moves), moveCount - from);
+
+        int start = startFrame(buffer, Protocol.MOVES);
+        buffer.putInt(from);
+        buffer.putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(moves[i]);
+        }
+        endFrame(buffer, start);
+        return from + count;
+    }
+
+    /**
+     * Encodes the frame telling a spectator, or a player whose shot came after
+     * the end, that the match is over.
+     *
+     * @param buffer The buffer the frame is appended to.
+     * @param winner The ID of the winner, 0 if the match does not exist.
+     */
+    static void encodeMatchOver(ByteBuffer buffer, int winner) {
+        int start = startFrame(buffer, Protocol.MATCH_OVER);
+        buffer.put((byte) winner);
+        endFrame(buffer, start);
+    }
+
+    /**
+     * Encodes the answer to a heartbeat.
+     *
+     * @param buffer The buffer the frame is appended to.
+     */
+    static void encodeHeartbeatAck(ByteBuffer buffer) {
+        endFrame(buffer, startFrame(buffer, Protocol.HEARTBEAT_ACK));
+    }
+
+    /**
+     * Encodes a fleet of protocol version 2 as a ship count followed by the
+     * placement of every ship.
+     *
+     * @param buffer The buffer the fleet is appended to.
+     * @param ships  The ships of one board.
+     */
+    private static void encodeFleet(ByteBuffer buffer, Ship[] ships) {
+        buffer.putShort((short) ships.length);
+        for (Ship ship : ships) {
+            buffer.put((byte) ship.getLength());
+            buffer.put((byte) ship.getRow());
+            buffer.put((byte) ship.getCol());
+            buffer.put((byte) (ship.isHorizontal() ? 1 : 0));
+        }
+    }
+
+    /**
+     * Starts a frame, leaving room for its length.
+     *
+     * @param buffer The buffer the frame is appended to.
+     * @param opcode The opcode of the frame.
+     * @return The position of the frame in the buffer.
+     */
+    private static int startFrame(ByteBuffer buffer, int opcode) {
+        int start = buffer.position();
+        buffer.putShort((short) 0);
+        buffer.put((byte) opcode);
+        return start;
+    }
+
+    /**
+     * Completes a frame by writing its length in front of it.
+     *
+     * @param buffer The buffer holding the frame.
+     * @param start  The position returned by {@link #startFrame}.
+     */
+    private static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putShort(start, (short) (buffer.position() - start - 2));
+    }
+}
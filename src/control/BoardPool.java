@@ -0,0 +1,200 @@
+package control;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Model;
+
+/**
+ * The BoardPool class generates the boards of new matches ahead of time, so
+ * that creating a match does not wait for the ships to be placed. It keeps a
+ * queue of ready models for the dimensions of the classic fleet and for the
+ * server's dimension. When a queue drops to the low watermark, background
+ * threads refill it up to the high watermark.
+ * <p>
+ * Other dimensions are chosen by clients, and a large board takes megabytes
+ * and milliseconds to generate, so they are not kept ready. Their boards are
+ * generated when a match needs one, on the same background threads, which
+ * bounds how many are generated at once; the caller waits for its board.
+ * <p>
+ * The watermarks are read from the {@code battleship.pool.low} and
+ * {@code battleship.pool.high} system properties.
+ */
+public class BoardPool {
+
+    private static final int DEFAULT_LOW_WATERMARK = 2;
+    private static final int DEFAULT_HIGH_WATERMARK = 8;
+
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Shelf[] shelves;
+    private final ExecutorService generators;
+
+    /**
+     * Constructs a BoardPool and starts filling it for the dimensions of the
+     * classic fleet.
+     *
+     * @param lowWatermark  The number of ready boards at which a dimension is
+     *                      refilled.
+     * @param highWatermark The number of ready boards a refill stops at.
+     */
+    public BoardPool(int lowWatermark, int highWatermark) {
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = Math.max(lowWatermark + 1, highWatermark);
+
+        shelves = new Shelf[Model.MAX_DIMENSION + 1];
+
+        // Leave a core to the network threads, and give way to them when busy
+        AtomicInteger threadCount = new AtomicInteger();
+        generators = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                task -> {
+                    Thread thread = new Thread(task, "board-pool-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        for (int dimension = 1; dimension <= Model.CLASSIC_MAX_DIMENSION; dimension++) {
+            keep(dimension);
+        }
+    }
+
+    /**
+     * Keeps boards of a dimension ready from now on, such as the server's.
+     * Must be called before the pool serves matches of that dimension.
+     *
+     * @param dimension The dimension of the game board.
+     */
+    public void keep(int dimension) {
+        if (dimension >= 1 && dimension < shelves.length && shelves[dimension] == null) {
+            shelves[dimension] = new Shelf();
+            scheduleRefill(dimension);
+        }
+    }
+
+    /**
+     * Creates a BoardPool with the watermarks set by the system properties.
+     *
+     * @return The started pool.
+     */
+    public static BoardPool fromProperties() {
+        return new BoardPool(Integer.getInteger("battleship.pool.low", DEFAULT_LOW_WATERMARK),
+                Integer.getInteger("battleship.pool.high", DEFAULT_HIGH_WATERMARK));
+    }
+
+    /**
+     * Takes a ready model for a new match. If the pool has run dry, the model
+     * is generated on the calling thread; if the pool does not keep the
+     * dimension, the calling thread waits for a model to be generated by the
+     * pool's threads. Either way it must not be the thread of an
+     * {@link EventLoop}.
+     *
+     * @param dimension The dimension of the game board.
+     * @return A model whose ships have been placed on both boards.
+     */
+    public Model take(int dimension) {
+        Shelf shelf = dimension >= 1 && dimension < shelves.length ? shelves[dimension] : null;
+        if (shelf == null) {
+            return generateAside(dimension);
+        }
+
+        Model model = shelf.ready.poll();
+        if (model == null) {
+            // Queued behind the refills, the caller's board could wait for all of them
+            scheduleRefill(dimension);
+            return generate(dimension);
+        }
+        if (shelf.size.decrementAndGet() <= lowWatermark) {
+            scheduleRefill(dimension);
+        }
+        return model;
+    }
+
+    /**
+     * Gets the number of boards ready for a dimension.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The number of ready boards.
+     */
+    public int size(int dimension) {
+        Shelf shelf = dimension >= 1 && dimension < shelves.length ? shelves[dimension] : null;
+        return shelf == null ? 0 : shelf.size.get();
+    }
+
+    /**
+     * Starts refilling a dimension unless a refill is already running for it.
+     *
+     * @param dimension The dimension of the game board.
+     */
+    private void scheduleRefill(int dimension) {
+        if (shelves[dimension].refilling.compareAndSet(false, true)) {
+            generators.execute(() -> refill(dimension));
+        }
+    }
+
+    /**
+     * Generates boards for a dimension until it reaches the high watermark.
+     *
+     * @param dimension The dimension of the game board.
+     */
+    private void refill(int dimension) {
+        Shelf shelf = shelves[dimension];
+        try {
+            while (shelf.size.get() < highWatermark) {
+                shelf.ready.add(generate(dimension));
+                shelf.size.incrementAndGet();
+            }
+        } finally {
+            shelf.refilling.set(false);
+        }
+        // Boards taken after the last check would otherwise wait for the next take
+        if (shelf.size.get() <= lowWatermark) {
+            scheduleRefill(dimension);
+        }
+    }
+
+    /**
+     * Generates a model on the pool's threads and waits for it.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The generated model.
+     */
+    private Model generateAside(int dimension) {
+        Future<Model> model = generators.submit(() -> generate(dimension));
+        try {
+            return model.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The board could not be generated", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a board", e);
+        }
+    }
+
+    /**
+     * Generates a model with randomized ships.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The generated model.
+     */
+    private static Model generate(int dimension) {
+        Model model = new Model();
+        model.setDimension(dimension);
+        model.randomizeShips();
+        return model;
+    }
+
+    /**
+     * The ready boards of one dimension.
+     */
+    private static class Shelf {
+        private final Queue<Model> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+    }
+}
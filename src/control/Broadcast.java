@@ -0,0 +1,166 @@
+package control;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import metrics.ServerMetrics;
+
+/**
+ * The Broadcast class streams the moves of one match to its spectators. The
+ * players' turns only schedule a fan-out; the fan-out then runs on an executor,
+ * reads the new moves from the log of the match, encodes them once into
+ * {@link Protocol#MOVES} frames and offers the same bytes to every
+ * {@link Spectator}. Once the match is over the spectators get a
+ * {@link Protocol#MATCH_OVER} frame.
+ * <p>
+ * At most one fan-out runs at a time, so the frames reach every spectator in
+ * order. Moves played while a fan-out runs are sent in one batch by the next.
+ */
+public class Broadcast implements Runnable {
+
+    private final Session session;
+    private final Executor executor;
+    private final List<Spectator> spectators = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ByteBuffer frameBuffer = ByteBuffer.allocate(BinaryCodec.MOVES_FRAME_SIZE);
+    private final int[] moves = new int[Protocol.MOVES_PER_FRAME];
+    private int sentMoves;
+    private volatile Frame endFrame;
+
+    /**
+     * Constructs a Broadcast for a match.
+     *
+     * @param session  The match whose moves are broadcast.
+     * @param executor The executor the fan-out runs on.
+     */
+    public Broadcast(Session session, Executor executor) {
+        this.session = session;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a spectator. The spectator sends the moves played so far itself,
+     * and gets every later move from the broadcast.
+     *
+     * @param spectator The spectator to add.
+     */
+    public void subscribe(Spectator spectator) {
+        spectators.add(spectator);
+        ServerMetrics.get().spectatorJoined();
+        Frame end = endFrame;
+        if (end != null) {
+            // The match ended before the spectator arrived
+            spectator.offer(end);
+        }
+    }
+
+    /**
+     * Removes a spectator.
+     *
+     * @param spectator The spectator to remove.
+     */
+    public void unsubscribe(Spectator spectator) {
+        if (spectators.remove(spectator)) {
+            ServerMetrics.get().spectatorLeft();
+        }
+    }
+
+    /**
+     * Schedules a fan-out of the moves that have not been broadcast yet. Does
+     * nothing if one is already scheduled, as it will pick up the new moves.
+     */
+    public void publish() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            fanOut();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            scheduled.set(false);
+            if (sentMoves < session.getMoveCount() || session.isOver() && endFrame == null) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Encodes the moves that have not been broadcast yet and offers them to
+     * every spectator, followed by the end of the match if it is over.
+     */
+    private void fanOut() {
+        int moveCount = session.getMoveCount();
+        while (sentMoves < moveCount) {
+            int from = sentMoves;
+            frameBuffer.clear();
+            sentMoves = BinaryCodec.encodeMoves(frameBuffer, session, from, moveCount, moves);
+            offer(new Frame(from, sentMoves, Arrays.copyOf(frameBuffer.array(), frameBuffer.position())));
+        }
+        if (endFrame == null && session.isOver() && sentMoves == session.getMoveCount()) {
+            frameBuffer.clear();
+            BinaryCodec.encodeMatchOver(frameBuffer, session.getWinner());
+            endFrame = new Frame(sentMoves, sentMoves, Arrays.copyOf(frameBuffer.array(), frameBuffer.position()));
+            offer(endFrame);
+        }
+    }
+
+    private void offer(Frame frame) {
+        for (Spectator spectator : spectators) {
+            spectator.offer(frame);
+        }
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * An encoded frame shared by every spectator, with the range of moves it
+     * holds.
+     */
+    static final class Frame {
+
+        private final int from;
+        private final int to;
+        private final byte[] bytes;
+
+        /**
+         * Constructs a Frame.
+         *
+         * @param from  The sequence number of the first move in the frame.
+         * @param to    The sequence number after the last move in the frame,
+         *              equal to {@code from} for the end of the match.
+         * @param bytes The encoded frame, length included.
+         */
+        Frame(int from, int to, byte[] bytes) {
+            this.from = from;
+            this.to = to;
+            this.bytes = bytes;
+        }
+
+        int getFrom() {
+            return from;
+        }
+
+        int getTo() {
+            return to;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        boolean isEnd() {
+            return from == to;
+        }
+    }
+}
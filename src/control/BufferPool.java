@@ -0,0 +1,64 @@
+package control;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The BufferPool class keeps the {@link ResponseBuffer}s of finished requests
+ * so the next requests can reuse them instead of allocating their own. Buffers
+ * that have grown beyond {@link #MAX_RETAINED} bytes, or that come back while
+ * the pool is full, are left to the garbage collector.
+ */
+public class BufferPool {
+
+    /** The initial capacity of a new buffer. */
+    public static final int INITIAL_SIZE = 1024;
+    /** The capacity above which a buffer is not kept. */
+    public static final int MAX_RETAINED = 64 * 1024;
+
+    private final Queue<ResponseBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
+
+    /**
+     * Constructs an empty BufferPool.
+     *
+     * @param maxSize The number of buffers kept at most.
+     */
+    public BufferPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Takes an empty buffer from the pool, or allocates one if the pool is
+     * empty.
+     *
+     * @return The buffer, to be given back with {@link #release}.
+     */
+    public ResponseBuffer take() {
+        ResponseBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return new ResponseBuffer(INITIAL_SIZE);
+        }
+        size.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool.
+     *
+     * @param buffer The buffer, which must not be used afterwards.
+     */
+    public void release(ResponseBuffer buffer) {
+        if (buffer.capacity() > MAX_RETAINED) {
+            return;
+        }
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            return;
+        }
+        buffer.reset();
+        buffers.offer(buffer);
+    }
+}
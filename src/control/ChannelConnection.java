@@ -0,0 +1,462 @@
+package control;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import metrics.CountingInputStream;
+import metrics.ServerMetrics;
+import model.Board;
+import model.Model;
+import model.Ship;
+
+/**
+ * The ChannelConnection class holds the state of one connection served by an
+ * {@link EventLoop}. It reads the first int of the connection, then the binary
+ * frames of the player, and answers them without ever blocking. A spectator is
+ * sent the frames of the match it watches whenever the socket can take them.
+ * A JOIN is run on a blocking thread, since its board may have to be
+ * generated, and answered by the loop once the player is seated.
+ * <p>
+ * A connection that sends nothing for the idle timeout is closed by its loop,
+ * and so is a client whose unread answers pile up beyond
+ * {@value #MAX_PENDING_BYTES} bytes.
+ */
+public class ChannelConnection {
+
+    private static final int READ_BUFFER_SIZE = 256;
+    /** The output a client may leave unread before it is evicted. */
+    static final int MAX_PENDING_BYTES = 1 << 20;
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Turn lastTurn = new Turn();
+    private ByteBuffer pending;
+    /** The bytes of an unknown frame still to be skipped. */
+    private int skipping;
+    private boolean negotiated;
+    private int version;
+    private boolean closeWhenFlushed;
+    private int request;
+    private Player player;
+    private boolean joining;
+    private volatile Player joinedPlayer;
+    private int moveCursor;
+    private Spectator spectator;
+    private TimerWheel.Timeout idleTimeout;
+    private final AtomicBoolean wokenUp = new AtomicBoolean();
+    private final Spectator.Writer spectatorWriter = new Spectator.Writer() {
+        @Override
+        public void sendMoves(int from, int to) throws IOException {
+            moveCursor = from;
+            ChannelConnection.this.send(encodeMoves(loop.frameBuffer(), spectator.getSession(), to));
+        }
+
+        @Override
+        public void send(byte[] frame) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            buffer.position(frame.length);
+            ChannelConnection.this.send(buffer);
+        }
+    };
+
+    /**
+     * Constructs a ChannelConnection for a newly accepted channel.
+     *
+     * @param loop    The event loop serving the connection.
+     * @param channel The channel of the connection.
+     * @param key     The key of the channel in the loop's selector.
+     */
+    public ChannelConnection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Starts the idle timeout of the connection, which runs until the client
+     * becomes a spectator or the connection leaves the loop.
+     */
+    void startIdleTimeout() {
+        idleTimeout = loop.getControl().startIdleTimeout(() -> loop.evict(this));
+    }
+
+    /**
+     * Reads what the client has sent and handles every complete frame.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    void onReadable() throws IOException {
+        int count = channel.read(readBuffer);
+        if (count < 0) {
+            close();
+            return;
+        }
+        idleTimeout.touch();
+        ServerMetrics.get().bytesRead(count);
+        readBuffer.flip();
+
+        if (!negotiated) {
+            if (readBuffer.remaining() < Integer.BYTES) {
+                readBuffer.compact();
+                return;
+            }
+            request = readBuffer.getInt();
+            if (!Protocol.isHello(request) || (request & 0xFFFF) < Protocol.VERSION_BINARY) {
+                startHandOff();
+                return;
+            }
+            negotiated = true;
+            version = Math.min(request & 0xFFFF, Protocol.VERSION);
+            ByteBuffer hello = loop.frameBuffer();
+            hello.putInt(Protocol.hello(version));
+            send(hello);
+        }
+
+        while (channel.isOpen()) {
+            if (skipping > 0) {
+                int skipped = Math.min(skipping, readBuffer.remaining());
+                readBuffer.position(readBuffer.position() + skipped);
+                skipping -= skipped;
+                if (skipping > 0) {
+                    break;
+                }
+            }
+            if (readBuffer.remaining() < Short.BYTES + 1) {
+                break;
+            }
+            int length = readBuffer.getShort(readBuffer.position()) & 0xFFFF;
+            if (length == 0) {
+                throw new IOException("Invalid frame length 0");
+            }
+            int opcode = readBuffer.get(readBuffer.position() + Short.BYTES) & 0xFF;
+            if (!BinaryCodec.isKnown(opcode)) {
+                // Frames of later versions are skipped whole, however long
+                readBuffer.position(readBuffer.position() + Short.BYTES + 1);
+                skipping = length - 1;
+                continue;
+            }
+            if (!BinaryCodec.hasValidLength(opcode, length, isWide())
+                    || length > readBuffer.capacity() - Short.BYTES) {
+                throw new IOException("Invalid length " + length + " for opcode " + opcode);
+            }
+            if (readBuffer.remaining() < Short.BYTES + length) {
+                break;
+            }
+            int end = readBuffer.position() + Short.BYTES + length;
+            readBuffer.position(readBuffer.position() + Short.BYTES + 1);
+            handleFrame(opcode, length);
+            readBuffer.position(end);
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * Handles one binary frame whose opcode has been read, and whose length
+     * has been checked against the opcode.
+     *
+     * @param opcode The opcode of the frame.
+     * @param length The length of the frame, opcode included.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void handleFrame(int opcode, int length) throws IOException {
+        Control control = loop.getControl();
+
+        if ((opcode == Protocol.JOIN || opcode == Protocol.JOIN_BOT) && player == null && spectator == null
+                && !joining) {
+            int dimension = length >= BinaryCodec.JOIN_WITH_DIMENSION ? readBuffer.getShort() & 0xFFFF : 0;
+            boolean bot = opcode == Protocol.JOIN_BOT;
+            joining = true;
+            control.executeBlocking(() -> {
+                try {
+                    joinedPlayer = bot ? control.joinBot(dimension) : control.joinPlayer(dimension);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                loop.completeJoin(this);
+            });
+        } else if (opcode == Protocol.SHOT) {
+            long start = System.nanoTime();
+            Session session = player != null ? player.getSession() : null;
+            int size = session != null ? session.getDimension() * 2 : 0;
+            int targetId = readBuffer.get() & 0xFF;
+            int row;
+            int col;
+            if (isWide()) {
+                int cell = readBuffer.getInt();
+                row = Board.rowOf(cell, size);
+                col = Board.colOf(cell, size);
+            } else {
+                row = readBuffer.get() & 0xFF;
+                col = readBuffer.get() & 0xFF;
+            }
+            if (length >= (isWide() ? BinaryCodec.WIDE_SHOT_WITH_ACK : BinaryCodec.SHOT_WITH_ACK)) {
+                moveCursor = readBuffer.getInt();
+            }
+            ServerMetrics.get().getShotDecode().record(System.nanoTime() - start);
+
+            Turn turn = control.validateShot(session, targetId, row, col, lastTurn);
+            start = System.nanoTime();
+            ByteBuffer frame = loop.frameBuffer();
+            BinaryCodec.encodeTurn(frame, turn, isWide() ? size : 0);
+            if (turn.isValid()) {
+                frame = encodeMoves(frame, session, turn.getMoveCount());
+            } else if (session != null && session.isOver()) {
+                BinaryCodec.encodeMatchOver(frame, session.getWinner());
+            }
+            send(frame);
+            ServerMetrics.get().getResponseWrite().record(System.nanoTime() - start);
+
+            if (turn.getWinner() != 0) {
+                control.endGame(session, turn.getWinner());
+            }
+            if (session != null && session.isOver()) {
+                closeWhenFlushed = true;
+                closeIfFlushed();
+            }
+        } else if (opcode == Protocol.LOG && player != null) {
+            moveCursor = readBuffer.getInt();
+            Session session = player.getSession();
+            send(encodeMoves(loop.frameBuffer(), session, session.getMoveCount()));
+        } else if (opcode == Protocol.HEARTBEAT) {
+            ByteBuffer frame = loop.frameBuffer();
+            BinaryCodec.encodeHeartbeatAck(frame);
+            send(frame);
+        } else if (opcode == Protocol.WATCH && player == null && spectator == null && !joining) {
+            // A spectator only listens, and leaves with the match
+            idleTimeout.cancel();
+            spectator = control.watch(readBuffer.getInt(), this::wakeUp);
+            if (spectator == null) {
+                ByteBuffer frame = loop.frameBuffer();
+                BinaryCodec.encodeMatchOver(frame, 0);
+                send(frame);
+                closeWhenFlushed = true;
+                closeIfFlushed();
+            } else {
+                spectator.catchUp(spectatorWriter);
+            }
+        }
+        // Frames that are not expected now are ignored
+    }
+
+    /**
+     * Sends the GAME frame of a player that has been seated on a blocking
+     * thread, with the fleets if the client speaks the wide protocol. Called
+     * by the loop.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    void onJoined() throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (joinedPlayer == null) {
+            close();
+            return;
+        }
+        player = joinedPlayer;
+        ByteBuffer frame = loop.frameBuffer();
+        BinaryCodec.encodeGame(frame, player, isWide());
+        if (isWide()) {
+            Model model = player.getSession().getModel();
+            frame = encodeFleet(frame, 1, model.getRandomizedShips(player.getId() == 1 ? 1 : 2));
+            frame = encodeFleet(frame, 2, model.getRandomizedShips(player.getId() == 1 ? 2 : 1));
+        }
+        send(frame);
+    }
+
+    /**
+     * Encodes the fleet frames of one board, sending the frame buffer whenever
+     * it is full.
+     *
+     * @param frame The frame buffer of the loop.
+     * @param board 1 for the player's fleet, 2 for the opponent's.
+     * @param ships The ships of the board.
+     * @return The frame buffer holding the frames that are still to be sent.
+     * @throws IOException If an error occurs during communication.
+     */
+    private ByteBuffer encodeFleet(ByteBuffer frame, int board, Ship[] ships) throws IOException {
+        int size = player.getSession().getDimension() * 2;
+        int from = 0;
+        while (from < ships.length) {
+            if (frame.remaining() < BinaryCodec.FLEET_FRAME_MIN_SIZE) {
+                send(frame);
+                frame = loop.frameBuffer();
+            }
+            from = BinaryCodec.encodeFleet(frame, board, ships, from, size);
+        }
+        return frame;
+    }
+
+    /**
+     * Encodes the moves from the cursor up to a sequence number, sending the
+     * frame buffer whenever it is full.
+     *
+     * @param frame     The frame buffer of the loop.
+     * @param session   The match the moves belong to.
+     * @param moveCount The sequence number to stop at.
+     * @return The frame buffer holding the frames that are still to be sent.
+     * @throws IOException If an error occurs during communication.
+     */
+    private ByteBuffer encodeMoves(ByteBuffer frame, Session session, int moveCount) throws IOException {
+        moveCursor = Math.max(0, Math.min(moveCursor, moveCount));
+        while (moveCursor < moveCount) {
+            if (frame.remaining() < BinaryCodec.MOVES_FRAME_SIZE) {
+                send(frame);
+                frame = loop.frameBuffer();
+            }
+            moveCursor = BinaryCodec.encodeMoves(frame, session, moveCursor, moveCount, loop.moves());
+        }
+        return frame;
+    }
+
+    /**
+     * Sends encoded frames, keeping what the socket does not take until it is
+     * writable again.
+     *
+     * @param frame The buffer the frames have been encoded into.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void send(ByteBuffer frame) throws IOException {
+        frame.flip();
+        if (pending == null) {
+            ServerMetrics.get().bytesWritten(channel.write(frame));
+            if (!frame.hasRemaining()) {
+                return;
+            }
+            pending = ByteBuffer.allocate(frame.remaining());
+        } else {
+            if (pending.remaining() + frame.remaining() > MAX_PENDING_BYTES) {
+                ServerMetrics.get().getSlowEvictions().increment();
+                throw new IOException("The client does not read its answers");
+            }
+            ByteBuffer grown = ByteBuffer.allocate(pending.remaining() + frame.remaining());
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.put(frame);
+        pending.flip();
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Sends the output that did not fit in the socket earlier.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    void onWritable() throws IOException {
+        ServerMetrics.get().bytesWritten(channel.write(pending));
+        if (!pending.hasRemaining()) {
+            pending = null;
+            key.interestOps(SelectionKey.OP_READ);
+            closeIfFlushed();
+            if (spectator != null) {
+                sendSpectated();
+            }
+        }
+    }
+
+    /**
+     * Wakes the loop to send the frames queued for the spectator. Called from
+     * the thread of the broadcast.
+     */
+    private void wakeUp() {
+        if (wokenUp.compareAndSet(false, true)) {
+            loop.wakeUp(this);
+        }
+    }
+
+    /**
+     * Sends the frames queued for the spectator as long as the socket takes
+     * them. The rest stays queued until the socket is writable again.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    void sendSpectated() throws IOException {
+        wokenUp.set(false);
+        Broadcast.Frame frame;
+        while (pending == null && channel.isOpen() && !closeWhenFlushed && (frame = spectator.poll()) != null) {
+            spectator.send(frame, spectatorWriter);
+            if (frame.isEnd()) {
+                closeWhenFlushed = true;
+                closeIfFlushed();
+            }
+        }
+    }
+
+    private boolean isWide() {
+        return version >= Protocol.VERSION_WIDE;
+    }
+
+    private void closeIfFlushed() {
+        if (closeWhenFlushed && pending == null) {
+            close();
+        }
+    }
+
+    /**
+     * Takes the connection off the event loop so it can be served by a blocking
+     * thread.
+     */
+    private void startHandOff() {
+        idleTimeout.cancel();
+        key.cancel();
+        loop.handOff(this);
+    }
+
+    /**
+     * Switches the channel to blocking mode and gives it to a blocking thread,
+     * replaying the bytes that were read after the first int.
+     *
+     * @throws IOException If the channel cannot be switched.
+     */
+    void completeHandOff() throws IOException {
+        byte[] leftover = new byte[readBuffer.remaining()];
+        readBuffer.get(leftover);
+        channel.configureBlocking(true);
+
+        Socket socket = channel.socket();
+        // The leftover has been counted when the loop read it, so only the socket is counted from here
+        InputStream inputStream = new SequenceInputStream(new ByteArrayInputStream(leftover),
+                new CountingInputStream(socket.getInputStream()));
+        loop.getControl().handOff(socket, inputStream, request);
+    }
+
+    /**
+     * Closes the connection if it is still served by the loop, after the idle
+     * timeout has fired.
+     */
+    void evict() {
+        if (key.isValid()) {
+            ServerMetrics.get().getIdleEvictions().increment();
+            close();
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    void close() {
+        idleTimeout.cancel();
+        key.cancel();
+        if (spectator != null) {
+            spectator.cancel();
+        }
+        if (channel.isOpen()) {
+            ServerMetrics.get().connectionClosed();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
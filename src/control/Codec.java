@@ -0,0 +1,99 @@
+package control;
+
+import java.io.IOException;
+
+/**
+ * The Codec interface reads and writes the messages of one persistent player
+ * connection in a given protocol version. A codec keeps the last shot it has
+ * read, so it can be reused for the whole match. Each message is sent to the
+ * socket in a single write.
+ */
+public interface Codec {
+
+    /** Returned by {@link #readJoin()} when the client plays against the bot. */
+    int AGAINST_BOT = -1;
+
+    /**
+     * Sets the idle timeout of the connection, touched whenever a message of
+     * the client is read.
+     *
+     * @param idleTimeout The timeout.
+     */
+    void setIdleTimeout(TimerWheel.Timeout idleTimeout);
+
+    /**
+     * Reads the request that places the client in a match, as a player or as
+     * a spectator.
+     *
+     * @return The ID of the match to watch, 0 to play a match, or
+     *         {@link #AGAINST_BOT} to play against the server's bot.
+     * @throws IOException If an error occurs during communication.
+     */
+    int readJoin() throws IOException;
+
+    /**
+     * Gets the board dimension asked for in the join request.
+     *
+     * @return The dimension, or 0 for the server's dimension.
+     */
+    int getDimension();
+
+    /**
+     * Sends the fleets, dimension and IDs of the match to the player.
+     *
+     * @param player The player that has joined.
+     * @throws IOException If an error occurs during communication.
+     */
+    void writeGame(Player player) throws IOException;
+
+    /**
+     * Reads the next shot of the player.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    void readShot() throws IOException;
+
+    /**
+     * Gets the target of the last shot read.
+     *
+     * @return The ID of the targeted board.
+     */
+    int getTargetId();
+
+    /**
+     * Gets the row of the last shot read.
+     *
+     * @return The row of the shot.
+     */
+    int getRow();
+
+    /**
+     * Gets the column of the last shot read.
+     *
+     * @return The column of the shot.
+     */
+    int getCol();
+
+    /**
+     * Sends the outcome of a shot to the player. A rejected shot in a match
+     * that is over also tells the player who won, if the protocol can.
+     *
+     * @param turn The outcome of the shot.
+     * @throws IOException If an error occurs during communication.
+     */
+    void writeTurn(Turn turn) throws IOException;
+
+    /**
+     * Sends the moves of a match to a spectator until the match is over.
+     *
+     * @param spectator The spectator, or {@code null} if the match does not
+     *                  exist.
+     * @throws IOException If an error occurs during communication.
+     */
+    void watch(Spectator spectator) throws IOException;
+
+    /**
+     * Releases the buffers of the codec once the connection is over.
+     */
+    void close();
+}
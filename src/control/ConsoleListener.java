@@ -0,0 +1,33 @@
+package control;
+
+/**
+ * The ConsoleListener class reports the events of a headless server on the
+ * standard output.
+ */
+public class ConsoleListener implements GameListener {
+
+    @Override
+    public void serverStarted(int port) {
+        System.out.println("Waiting for players on port " + port);
+    }
+
+    @Override
+    public void matchesRestored(int count) {
+        System.out.println("Restored " + count + " matches in progress");
+    }
+
+    @Override
+    public void clusterChanged(int epoch, int node, int nodes) {
+        System.out.printf("Cluster epoch %d: serving as node %d of %d%n", epoch, node + 1, nodes);
+    }
+
+    @Override
+    public void matchStarted(int gameId) {
+        System.out.printf("Both players have connected to game %d. Let the battle begin!%n", gameId);
+    }
+
+    @Override
+    public void matchEnded(int gameId, int winner) {
+        System.out.printf("Game %d is over. WINNER IS %s%n", gameId, winner == 1 ? "FIRST PLAYER" : "SECOND PLAYER");
+    }
+}
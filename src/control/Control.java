@@ -1,99 +1,219 @@
 package control;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.io.*;
 import java.net.*;
-import view.View;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import metrics.CountingInputStream;
+import metrics.CountingOutputStream;
+import metrics.ServerMetrics;
+import model.Board;
 import model.Model;
-import model.Ship;
+import cluster.ClusterView;
+import cluster.Router;
+import replay.ReplayArchive;
 
 /**
  * The Control class acts as a controller in the battleship game,
- * managing user interactions, game logic, and communication.
+ * managing game logic and communication. It reports the progress of the
+ * matches to a {@link GameListener} and never waits for it, so it runs the same
+ * with a window or headless.
+ * <p>
+ * A single server hosts many matches at once. Every connection starts with the
+ * client sending a request type: {@link #JOIN} places the player in a match and
+ * sends the handshake, {@link #SHOT} is followed by the game ID, the target ID
+ * and the coordinate of the shot.
+ * <p>
+ * Clients of the original single-match server are not served. Their join
+ * connection sends nothing and their shot starts with the target ID, so
+ * neither carries a request type.
+ * <p>
+ * A player joining with {@link #JOIN_PERSISTENT} keeps the same connection for
+ * the whole match instead. After the handshake every message on it goes
+ * through one pair of object streams, and each shot is answered with the same
+ * fields as a {@link #SHOT} connection.
+ * <p>
+ * A client may also start with a hello from {@link Protocol} to negotiate the
+ * protocol version of a persistent connection. In version
+ * {@link Protocol#VERSION_BINARY} a client may watch a running match instead of
+ * joining one, or play against the server's bot instead of waiting for an
+ * opponent, and may ask for a board dimension other than the server's.
+ * Players are paired by the {@link Matchmaker}, which gives the bot to those
+ * left waiting too long. Boards larger than the classic fleet allows, up to
+ * {@link Model#MAX_DIMENSION}, are played by every client, but the fleets of
+ * the largest ones are only sent in version {@link Protocol#VERSION_WIDE}.
+ * <p>
+ * The network layer runs in the {@link ExecutionMode} selected at startup.
+ * Every connection and shot is recorded in the {@link ServerMetrics}, and the
+ * matches are logged to a {@link Journal} when one is configured, so they
+ * survive a restart. Finished matches are saved to a {@link ReplayArchive}
+ * when {@code battleship.replays} names a directory.
+ * <p>
+ * Nothing a client does can hold the server up for long. A blocking
+ * connection has {@code battleship.read.timeout} milliseconds, 10000 by
+ * default, to send each part of its request. A persistent player connection
+ * that sends nothing for {@code battleship.idle.timeout} milliseconds, 60000 by
+ * default, is closed, and binary clients send {@link Protocol#HEARTBEAT} to
+ * stay connected while idle. A match in which nobody moves for the turn
+ * timeout of the {@link SessionRegistry} is forfeited by the player to move,
+ * which also releases its spectators. These timeouts run on one
+ * {@link TimerWheel}.
+ * <p>
+ * Started with {@code battleship.cluster}, the server is a node of a cluster
+ * behind a {@link Router}, which sends it the members of the cluster with
+ * {@link #CLUSTER} whenever they change and hands out the game IDs of new
+ * matches accordingly.
+ * <p>
+ * Each response is collected in a pooled {@link ResponseBuffer} and written to
+ * the socket at once, and sockets are opened with {@code TCP_NODELAY}, so a
+ * move costs one write and one packet.
  */
-public class Control implements ActionListener {
-
-    private View view;
-    private Model model;
-    private int currentTargetId;
+public class Control {
+
+    /** Request type sent by a player joining a match. */
+    public static final int JOIN = 0;
+    /** Request type sent by a player firing a shot. */
+    public static final int SHOT = 1;
+    /** Request type sent by a player joining a match over a persistent connection. */
+    public static final int JOIN_PERSISTENT = 2;
+    /**
+     * Request type sent by a cluster router, followed by a {@link ClusterView}
+     * or by epoch 0 to probe the node, and answered with the epoch of the view
+     * the node had before, 0 if none. Only taken when the server is started
+     * with {@code battleship.cluster}.
+     */
+    public static final int CLUSTER = 3;
+
+    private GameListener listener;
+    private BoardPool boards = BoardPool.fromProperties();
+    private SessionRegistry sessions;
+    private Matchmaker matchmaker;
+    private Journal journal;
+    private ReplayArchive replays;
     private int dimension;
     private ServerSocket serverSocket;
-    private Ship[] firstPlayerShips;
-    private Ship[] secondPlayerShips;
-    private final int INVALID_SHOT = 0;
-    private final int HIT = 1;
-    private final int MISSED = 2;
-
-    private String coordinateToUpdate;
-    private boolean coordinateToUpdateHit;
+    private ExecutorService connectionExecutor;
+    private ExecutionMode executionMode;
+    private ServerMetrics metrics = ServerMetrics.get();
+    private BufferPool buffers = new BufferPool(MAX_POOLED_BUFFERS);
+    private int backlog = Integer.getInteger("battleship.backlog", DEFAULT_BACKLOG);
+    private int spectatorQueueSize = Integer.getInteger("battleship.spectator.queue", Spectator.DEFAULT_QUEUE_SIZE);
+    private boolean clustered = Boolean.getBoolean("battleship.cluster");
+    private TimerWheel timers = new TimerWheel();
+    private long idleTimeoutMillis = Long.getLong("battleship.idle.timeout", DEFAULT_IDLE_TIMEOUT_MILLIS);
+    private int readTimeoutMillis = Integer.getInteger("battleship.read.timeout", DEFAULT_READ_TIMEOUT_MILLIS);
+    private int clusterEpoch;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    // Spectators reconnect together when a popular match ends
+    private static final int DEFAULT_BACKLOG = 1024;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 10_000;
+    static final int INVALID_SHOT = 0;
+    static final int HIT = 1;
+    static final int MISSED = 2;
 
     /**
-     * Constructs a Control object with the associated view and model.
+     * Constructs a Control object reporting to a listener.
      *
-     * @param view  The view representing the user interface.
-     * @param model The model containing the game logic.
+     * @param listener The listener receiving the events of the matches.
      */
-    public Control(View view, Model model) {
-        this.view = view;
-        this.model = model;
-        view.addController(this);
+    public Control(GameListener listener) {
+        this.listener = listener;
+        this.sessions = new SessionRegistry(boards, timers, this::turnExpired);
+        this.matchmaker = new Matchmaker(sessions, this::botSeated);
+        this.executionMode = ExecutionMode.fromProperty();
+        this.connectionExecutor = executionMode.newConnectionExecutor();
+        metrics.setMatchesInProgress(sessions::size);
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (e.getSource() == view.getstartButton()) {
-            handleStartButton();
-        } else if (e.getSource() == view.getendButton()) {
-            handleEndButton();
+    /**
+     * Starts serving matches of the given dimension. In
+     * {@link ExecutionMode#NIO} mode this returns once the event loops are
+     * running, otherwise the calling thread accepts connections until the
+     * socket is closed.
+     *
+     * @param serverPort The port number for the server socket.
+     * @param dimension  The dimension of the game boards.
+     * @throws IOException If the server socket cannot be opened.
+     * @throws IllegalArgumentException If the dimension is not between 1 and
+     *                                  {@link Model#MAX_DIMENSION}.
+     */
+    public void start(int serverPort, int dimension) throws IOException {
+        if (dimension < 1 || dimension > Model.MAX_DIMENSION) {
+            throw new IllegalArgumentException("The dimension must be between 1 and " + Model.MAX_DIMENSION);
         }
+        this.dimension = dimension;
+        boards.keep(dimension);
+        metrics.expose();
+        openJournal();
+        String replayDirectory = System.getProperty("battleship.replays");
+        if (replayDirectory != null && replays == null) {
+            replays = new ReplayArchive(Paths.get(replayDirectory));
+        }
+        openSocket(serverPort);
     }
 
     /**
-     * Handles the start button click event.
-     * Initializes the game and sets up the network communication.
+     * Restores the matches in progress from the journal named by
+     * {@code battleship.journal}, and logs the matches from now on. Without
+     * that setting nothing is logged.
+     *
+     * @throws IOException If the journal cannot be opened.
      */
-    public void handleStartButton() {
-        try {
-            dimension = view.getDimension() != 0 ? view.getDimension() : 1;
-            model.setDimension(dimension);
-            int port = Integer.parseInt(view.getPortNumber());
-            openSocket(port);
-        } catch (Exception e) {
-            view.showError();
+    private void openJournal() throws IOException {
+        String directory = System.getProperty("battleship.journal");
+        if (directory == null || journal != null) {
+            return;
         }
+        journal = Journal.open(Paths.get(directory), sessions);
+        for (Session session : sessions.getSessions()) {
+            if (!session.isFull()) {
+                matchmaker.enqueue(session);
+            }
+        }
+        listener.matchesRestored(sessions.size());
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-close"));
     }
 
     /**
-     * Handles the end button click event.
-     * Exits the game application.
+     * Opens a socket for network communication and serves the connections of
+     * every match in the selected execution mode.
+     *
+     * @param serverPort The port number for the server socket.
+     * @throws IOException If an error occurs during socket setup.
      */
-    public void handleEndButton() {
-        System.exit(0);
+    public void openSocket(int serverPort) throws IOException {
+        if (executionMode == ExecutionMode.NIO) {
+            EventLoop.open(this, serverPort, backlog, Runtime.getRuntime().availableProcessors());
+            listener.serverStarted(serverPort);
+        } else {
+            serveBlocking(serverPort);
+        }
     }
 
     /**
-     * Opens a socket for network communication and starts the game.
+     * Serves every match from one accepting thread until the socket is closed.
+     * In {@link ExecutionMode#VIRTUAL} mode each connection is served on a
+     * thread of its own, otherwise short requests are served by the accepting
+     * thread.
      *
      * @param serverPort The port number for the server socket.
-     * @throws Exception If an error occurs during socket setup.
+     * @throws IOException If the server socket cannot be opened.
      */
-    public void openSocket(int serverPort) throws Exception {
-        serverSocket = null;
+    private void serveBlocking(int serverPort) throws IOException {
+        serverSocket = new ServerSocket(serverPort, backlog);
+        listener.serverStarted(serverPort);
 
         try {
-            model.randomizeShips();
-            serverSocket = new ServerSocket(serverPort);
-
-            // Accept connections and start the game
-            acceptConnection(1);
-            acceptConnection(2);
-
-            String message = "Both players have connected. Let the battle begin!";
-            view.appendMessageBox(message);
-
-            view.disposeMenu();
-            startGame();
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                long acceptedAt = System.nanoTime();
+                if (executionMode == ExecutionMode.VIRTUAL) {
+                    connectionExecutor.execute(() -> serve(socket, null, 0, acceptedAt));
+                } else {
+                    serve(socket, null, 0, acceptedAt);
+                }
+            }
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -110,108 +230,368 @@ public class Control implements ActionListener {
     }
 
     /**
-     * Accepts a connection from a player, sends game data, and sets up
-     * communication.
+     * Serves a connection and closes it unless it stays open for the rest of
+     * the match.
      *
-     * @param id The ID of the player (1 or 2).
-     * @throws Exception If an error occurs during communication setup.
+     * @param socket      The connected client socket.
+     * @param inputStream The stream the request is read from, whose bytes are
+     *                    already counted, or {@code null} to read the request
+     *                    type from the socket first.
+     * @param request     The request type or hello, if already read.
+     * @param acceptedAt  The time the connection was accepted, in
+     *                    {@link System#nanoTime()} units, or 0 if it has
+     *                    already been recorded.
      */
-    public void acceptConnection(int id) throws Exception {
-        Socket socket = serverSocket.accept();
-
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-        objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 1 : 2));
-        objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 2 : 1));
-        objectOutputStream.flush();
-
-        DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
-        dataOutputStream.writeInt(dimension);
-        dataOutputStream.writeInt(id);
-        dataOutputStream.flush();
-
-        socket.close();
+    private void serve(Socket socket, InputStream inputStream, int request, long acceptedAt) {
+        try {
+            // A client that stops halfway through its request only holds the connection this long
+            socket.setSoTimeout(readTimeoutMillis);
+            if (inputStream == null) {
+                metrics.connectionOpened();
+                metrics.getAcceptWait().record(System.nanoTime() - acceptedAt);
+                // Every response goes out in one write, so Nagle's algorithm would only delay it
+                socket.setTcpNoDelay(true);
+                inputStream = new BufferedInputStream(new CountingInputStream(socket.getInputStream()));
+                request = new DataInputStream(inputStream).readInt();
+            } else {
+                inputStream = new BufferedInputStream(inputStream);
+            }
+            if (!dispatch(socket, inputStream, request)) {
+                close(socket);
+            }
+        } catch (Exception e) {
+            // A broken connection only affects its own match
+            e.printStackTrace();
+            close(socket);
+        }
     }
 
     /**
-     * Starts the game loop, handling player turns, updates, and communication.
+     * Closes a connection served by a blocking thread.
      *
-     * @throws Exception If an error occurs during communication or game logic.
+     * @param socket The socket of the connection.
      */
-    public void startGame() throws Exception {
-        currentTargetId = 2;
-        boolean canPlay = true;
-        while (canPlay) {
-            Socket socket = serverSocket.accept();
-
-            DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
-            DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
-            int targetId = dataInputStream.readInt();
-
-            ObjectInputStream objectInputStream = new ObjectInputStream(socket.getInputStream());
-            String coordinate = (String) objectInputStream.readObject();
+    void close(Socket socket) {
+        metrics.connectionClosed();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            if (targetId == currentTargetId) {
-                int playerId = targetId == 2 ? 1 : 2;
+    /**
+     * Serves a connection whose first int has already been read by an
+     * {@link EventLoop}, on a thread of its own.
+     *
+     * @param socket      The connected client socket, in blocking mode.
+     * @param inputStream The stream the rest of the request is read from,
+     *                    counting the bytes it takes from the socket.
+     * @param request     The request type or hello sent by the client.
+     */
+    void handOff(Socket socket, InputStream inputStream, int request) {
+        connectionExecutor.execute(() -> serve(socket, inputStream, request, 0));
+    }
 
-                ObjectOutputStream objectOutputStream;
-                boolean hit = validateShot(targetId, coordinate);
-                dataOutputStream.writeInt(hit ? HIT : MISSED);
+    /**
+     * Runs a task that may block, such as seating a player of an
+     * {@link EventLoop}, on a connection thread.
+     *
+     * @param task The task to run.
+     */
+    void executeBlocking(Runnable task) {
+        connectionExecutor.execute(task);
+    }
 
-                objectOutputStream = new ObjectOutputStream(dataOutputStream);
+    /**
+     * Dispatches a connection according to its request type or hello.
+     *
+     * @param socket      The connected client socket.
+     * @param inputStream The stream the rest of the request is read from.
+     * @param request     The request type or hello sent by the client.
+     * @return {@code true} if the connection stays open for the rest of the
+     *         match, {@code false} if it can be closed.
+     * @throws Exception If an error occurs during communication.
+     */
+    private boolean dispatch(Socket socket, InputStream inputStream, int request) throws Exception {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        OutputStream outputStream = new CountingOutputStream(socket.getOutputStream());
+
+        if (Protocol.isHello(request)) {
+            int version = Math.min(request & 0xFFFF, Protocol.VERSION);
+            ResponseBuffer buffer = buffers.take();
+            new DataOutputStream(buffer).writeInt(Protocol.hello(version));
+            buffer.sendTo(outputStream);
+            buffers.release(buffer);
+
+            Codec codec = version >= Protocol.VERSION_BINARY ? new BinaryCodec(inputStream, outputStream, version)
+                    : new SerializedCodec(inputStream, outputStream, buffers);
+            // Persistent connections are timed out by the wheel instead
+            socket.setSoTimeout(0);
+            connectionExecutor.execute(new PlayerConnection(this, socket, codec));
+            return true;
+        } else if (request == JOIN) {
+            acceptConnection(outputStream);
+        } else if (request == JOIN_PERSISTENT) {
+            Codec codec = new SerializedCodec(inputStream, outputStream, buffers);
+            socket.setSoTimeout(0);
+            connectionExecutor.execute(new PlayerConnection(this, socket, codec));
+            return true;
+        } else if (request == SHOT) {
+            Session session = sessions.get(dataInputStream.readInt());
+            handleShot(session, dataInputStream, outputStream);
+        } else if (request == CLUSTER && clustered) {
+            joinCluster(dataInputStream, outputStream);
+        }
+        return false;
+    }
 
-                objectOutputStream.writeObject(model.getCurrentShip());
+    /**
+     * Takes the view of the cluster sent by the router, so that new matches
+     * get game IDs the router finds this node from. A probe only gets the
+     * epoch of the current view.
+     *
+     * @param dataInputStream The stream the view is read from.
+     * @param outputStream    The stream to the router.
+     * @throws IOException If an I/O error occurs or the view is not valid.
+     */
+    private synchronized void joinCluster(DataInputStream dataInputStream, OutputStream outputStream)
+            throws IOException {
+        ClusterView view = ClusterView.read(dataInputStream);
+        DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.writeInt(clusterEpoch);
+        dataOutputStream.flush();
+        if (view != null) {
+            sessions.setCluster(view);
+            if (view.getEpoch() != clusterEpoch) {
+                clusterEpoch = view.getEpoch();
+                listener.clusterChanged(view.getEpoch(), view.getSelf(), view.getRing().size());
+            }
+        }
+    }
 
-                // objectOutputStream.flush();
+    /**
+     * Accepts a connection from a player, places the player in a match, sends
+     * game data, and sets up communication.
+     *
+     * @param outputStream The stream to the joining player.
+     * @throws Exception If an error occurs during communication setup.
+     */
+    public void acceptConnection(OutputStream outputStream) throws Exception {
+        Player player = joinPlayer();
+        Session session = player.getSession();
+        int id = player.getId();
+        Model model = session.getModel();
 
-                currentTargetId = playerId;
+        ResponseBuffer buffer = buffers.take();
+        try {
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer);
+            objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 1 : 2));
+            objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 2 : 1));
+            objectOutputStream.flush();
+
+            DataOutputStream dataOutputStream = new DataOutputStream(buffer);
+            dataOutputStream.writeInt(session.getDimension());
+            dataOutputStream.writeInt(id);
+            dataOutputStream.writeInt(session.getGameId());
+            buffer.sendTo(outputStream);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
 
-                objectOutputStream.writeObject(coordinateToUpdate);
+    /**
+     * Places a joining player in a match of the server's dimension.
+     *
+     * @return The player seated in the match.
+     */
+    public Player joinPlayer() {
+        return joinPlayer(0);
+    }
 
-                dataOutputStream.writeBoolean(coordinateToUpdateHit);
+    /**
+     * Places a joining player in a match, pairing it with a player waiting for
+     * a match of the same dimension.
+     *
+     * @param dimension The dimension asked for by the player, or 0 for the
+     *                  server's dimension.
+     * @return The player seated in the match.
+     */
+    public Player joinPlayer(int dimension) {
+        Player player = matchmaker.join(dimensionOrDefault(dimension));
+        announceStart(player.getSession());
+        return player;
+    }
 
-                int targetHealth = model.getBoardHealth(targetId);
+    /**
+     * Places a joining player in a new match against the server's bot.
+     *
+     * @param dimension The dimension asked for by the player, or 0 for the
+     *                  server's dimension.
+     * @return The player seated in the match.
+     */
+    public Player joinBot(int dimension) {
+        Player player = matchmaker.joinBot(dimensionOrDefault(dimension));
+        announceStart(player.getSession());
+        return player;
+    }
 
-                int playerHealth = model.getBoardHealth(playerId);
+    /**
+     * Gets the dimension a player is given.
+     *
+     * @param dimension The dimension asked for by the player.
+     * @return The dimension asked for, or the server's dimension if none was
+     *         asked for or it is not between 1 and {@link Model#MAX_DIMENSION}.
+     */
+    private int dimensionOrDefault(int dimension) {
+        return dimension >= 1 && dimension <= Model.MAX_DIMENSION ? dimension : this.dimension;
+    }
 
-                dataOutputStream.writeInt(targetHealth);
-                // objectOutputStream.flush();
+    /**
+     * Starts a match whose waiting player has been given the server's bot, and
+     * ends it if the bot's first shot has already won it.
+     *
+     * @param session The match.
+     */
+    private void botSeated(Session session) {
+        announceStart(session);
+        if (session.isOver()) {
+            endGame(session, session.getWinner());
+        }
+    }
 
-                dataOutputStream.writeInt(playerHealth);
-                // objectOutputStream.flush();
+    /**
+     * Subscribes a spectator to a running match.
+     *
+     * @param gameId The ID of the match to watch.
+     * @param wakeUp Called whenever a frame is queued for the spectator, or
+     *               {@code null} if the connection waits for frames.
+     * @return The spectator, or {@code null} if the match does not exist.
+     */
+    public Spectator watch(int gameId, Runnable wakeUp) {
+        Session session = sessions.get(gameId);
+        if (session == null) {
+            return null;
+        }
+        Broadcast broadcast = session.getBroadcast(connectionExecutor);
+        Spectator spectator = new Spectator(broadcast, spectatorQueueSize, wakeUp);
+        broadcast.subscribe(spectator);
+        return spectator;
+    }
 
-                coordinateToUpdate = coordinate;
+    /**
+     * Starts the idle timeout of a persistent player connection.
+     *
+     * @param onIdle Called on the wheel's thread when the connection has sent
+     *               nothing for {@code battleship.idle.timeout} milliseconds.
+     * @return The timeout, to be touched whenever the player sends a frame.
+     */
+    TimerWheel.Timeout startIdleTimeout(Runnable onIdle) {
+        return timers.schedule(idleTimeoutMillis, onIdle);
+    }
 
-                coordinateToUpdateHit = hit;
+    /**
+     * Ends a match in which no move has been played for the turn timeout. The
+     * match is archived as a replay ending with the forfeit of the player to
+     * move.
+     *
+     * @param session The match.
+     */
+    private void turnExpired(Session session) {
+        if (!session.forfeit()) {
+            return;
+        }
+        sessions.remove(session);
+        metrics.getForfeits().increment();
+        int winner = session.getWinner();
+        if (winner != 0) {
+            if (replays != null) {
+                replays.save(session.getGameId(), session.getDimension(), session.getModel(), winner,
+                        winner == 1 ? 2 : 1);
+            }
+            listener.matchEnded(session.getGameId(), winner);
+        } else {
+            matchmaker.remove(session);
+        }
+    }
 
-                if (targetHealth == 0) {
-                    view.showGameOver(playerId);
-                    canPlay = false;
-                } else if (playerHealth == 0) {
-                    view.showGameOver(targetId);
-                    canPlay = false;
-                }
+    /**
+     * Announces the start of a match once both players have joined.
+     *
+     * @param session The match a player has just joined.
+     */
+    private void announceStart(Session session) {
+        if (session.isFull()) {
+            listener.matchStarted(session.getGameId());
+        }
+    }
 
-                objectOutputStream.writeObject(model.getRecord());
+    /**
+     * Plays one turn of a match, handling the shot, updates, and communication.
+     *
+     * @param session         The match the shot belongs to, or {@code null} if
+     *                        the match does not exist.
+     * @param dataInputStream The stream the shot is read from.
+     * @param outputStream    The stream to the shooting player.
+     * @throws Exception If an error occurs during communication or game logic.
+     */
+    public void handleShot(Session session, DataInputStream dataInputStream, OutputStream outputStream)
+            throws Exception {
+        int targetId = dataInputStream.readInt();
+
+        long start = System.nanoTime();
+        ObjectInputStream objectInputStream = new ObjectInputStream(dataInputStream);
+        String coordinate = (String) objectInputStream.readObject();
+        int row = Board.parseRow(coordinate);
+        int col = Board.parseCol(coordinate);
+        metrics.getShotDecode().record(System.nanoTime() - start);
+
+        Turn turn = validateShot(session, targetId, row, col, new Turn());
+        start = System.nanoTime();
+        ResponseBuffer buffer = buffers.take();
+        try {
+            SerializedCodec.writeResponse(turn, session, buffer);
+            buffer.sendTo(outputStream);
+        } finally {
+            buffers.release(buffer);
+        }
+        metrics.getResponseWrite().record(System.nanoTime() - start);
 
-            } else {
-                dataOutputStream.writeInt(INVALID_SHOT);
-            }
+        if (turn.getWinner() != 0) {
+            endGame(session, turn.getWinner());
+        }
+    }
 
-            if (dataInputStream != null) {
-                dataInputStream.close();
-            }
+    /**
+     * Ends a match, announces the winner and releases the session.
+     *
+     * @param session The match that has ended.
+     * @param winner  The ID of the winning player (1 or 2).
+     */
+    public void endGame(Session session, int winner) {
+        sessions.remove(session);
+        if (replays != null) {
+            replays.save(session.getGameId(), session.getDimension(), session.getModel(), winner);
         }
+        listener.matchEnded(session.getGameId(), winner);
     }
 
     /**
      * Validates a shot fired by a player and updates game state.
      *
-     * @param targetId   The ID of the targeted player (1 or 2).
-     * @param coordinate The coordinate at which the shot is fired.
-     * @return {@code true} if the shot hits a ship, {@code false} otherwise.
-     * @throws Exception If an error occurs during game logic.
+     * @param session    The match the shot belongs to, or {@code null} if the
+     *                   match does not exist.
+     * @param targetId The ID of the targeted player (1 or 2).
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @param lastTurn The turn of the shooter's connection the outcome is
+     *                 filled into, reused from one shot to the next.
+     * @return The outcome of the shot, in {@code lastTurn} unless the shot was
+     *         rejected.
      */
-    public boolean validateShot(int targetId, String coordinate) throws Exception {
-        return model.receiveShot(targetId, coordinate);
+    public Turn validateShot(Session session, int targetId, int row, int col, Turn lastTurn) {
+        Turn turn = session != null ? session.playTurn(targetId, row, col, lastTurn) : Turn.INVALID;
+        metrics.shotPlayed(turn.isValid());
+        return turn;
     }
 }
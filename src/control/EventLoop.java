@@ -0,0 +1,310 @@
+package control;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import metrics.ServerMetrics;
+
+/**
+ * The EventLoop class runs a {@link Selector} that serves many connections from
+ * one thread without blocking. The server starts one loop per core: the first
+ * loop also accepts new connections and spreads them over all loops.
+ * <p>
+ * Binary connections are served by the loop until they close. Connections that
+ * speak another protocol version are handed to a blocking thread once their
+ * first int has been read. Spectators watching a match are woken up by its
+ * {@link Broadcast} and served by their loop as well, and connections whose
+ * idle timeout has fired are closed by their loop. A JOIN may wait for a board
+ * to be generated, so it is run on a blocking thread and its answer sent by
+ * the loop once the player is seated.
+ */
+public class EventLoop implements Runnable {
+
+    private final Control control;
+    private final Selector selector;
+    private final Queue<Registration> registrations = new ConcurrentLinkedQueue<>();
+    private final List<ChannelConnection> handOffs = new ArrayList<>();
+    private final Queue<ChannelConnection> spectators = new ConcurrentLinkedQueue<>();
+    private final Queue<ChannelConnection> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<ChannelConnection> joined = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer frameBuffer = ByteBuffer.allocateDirect(BinaryCodec.MAX_FRAME);
+    private final int[] moves = new int[Protocol.MOVES_PER_FRAME];
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private int nextLoop;
+
+    /**
+     * Constructs an EventLoop with a selector of its own.
+     *
+     * @param control The controller the connections are served for.
+     * @throws IOException If the selector cannot be opened.
+     */
+    public EventLoop(Control control) throws IOException {
+        this.control = control;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Opens a server socket channel and starts a pool of event loops serving it.
+     *
+     * @param control    The controller the connections are served for.
+     * @param serverPort The port number for the server socket.
+     * @param backlog    The number of connections waiting to be accepted at
+     *                   most.
+     * @param count      The number of event loops to start.
+     * @return The started event loops.
+     * @throws IOException If the server socket or a selector cannot be opened.
+     */
+    public static EventLoop[] open(Control control, int serverPort, int backlog, int count) throws IOException {
+        EventLoop[] loops = new EventLoop[Math.max(1, count)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(control);
+        }
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(serverPort), backlog);
+        serverChannel.configureBlocking(false);
+        loops[0].serverChannel = serverChannel;
+        loops[0].loops = loops;
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "event-loop-" + i);
+            thread.start();
+        }
+        return loops;
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                completeHandOffs();
+                registerPending();
+                serveSpectators();
+                evictIdle();
+                answerJoined();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptAll();
+                    } else {
+                        serve(key);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Lets a connection handle its readiness, closing it if it fails.
+     *
+     * @param key The selected key of the connection.
+     */
+    private void serve(SelectionKey key) {
+        ChannelConnection connection = (ChannelConnection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (Exception e) {
+            // A broken connection only affects its own match
+            connection.close();
+        }
+    }
+
+    /**
+     * Accepts every pending connection and assigns them to the loops in turn.
+     *
+     * @throws IOException If an error occurs while accepting.
+     */
+    private void acceptAll() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.registrations.add(new Registration(channel, System.nanoTime()));
+            if (loop != this) {
+                loop.selector.wakeup();
+            }
+        }
+        registerPending();
+    }
+
+    /**
+     * Registers the connections assigned to this loop with its selector.
+     *
+     * @throws IOException If a channel cannot be configured.
+     */
+    private void registerPending() throws IOException {
+        Registration registration;
+        while ((registration = registrations.poll()) != null) {
+            SocketChannel channel = registration.channel;
+            ServerMetrics.get().connectionOpened();
+            ServerMetrics.get().getAcceptWait().record(System.nanoTime() - registration.acceptedAt);
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            ChannelConnection connection = new ChannelConnection(this, channel, key);
+            key.attach(connection);
+            connection.startIdleTimeout();
+        }
+    }
+
+    /**
+     * Queues a connection to leave this loop. Its key has been cancelled and is
+     * deregistered by the next select, after which the channel can block.
+     *
+     * @param connection The connection to hand off.
+     */
+    void handOff(ChannelConnection connection) {
+        handOffs.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Gives the connections that have left this loop to blocking threads.
+     */
+    private void completeHandOffs() {
+        for (ChannelConnection connection : handOffs) {
+            try {
+                connection.completeHandOff();
+            } catch (IOException e) {
+                e.printStackTrace();
+                connection.close();
+            }
+        }
+        handOffs.clear();
+    }
+
+    /**
+     * Queues a spectator connection whose broadcast has new frames, and wakes
+     * the loop to send them. Called from the thread of the broadcast.
+     *
+     * @param connection The connection of the spectator.
+     */
+    void wakeUp(ChannelConnection connection) {
+        spectators.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Sends the queued frames of the spectators that have been woken up.
+     */
+    private void serveSpectators() {
+        ChannelConnection connection;
+        while ((connection = spectators.poll()) != null) {
+            try {
+                connection.sendSpectated();
+            } catch (Exception e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Queues a connection whose idle timeout has fired, and wakes the loop to
+     * close it. Called from the thread of the timer wheel.
+     *
+     * @param connection The idle connection.
+     */
+    void evict(ChannelConnection connection) {
+        idle.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the connections whose idle timeout has fired.
+     */
+    private void evictIdle() {
+        ChannelConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.evict();
+        }
+    }
+
+    /**
+     * Queues a connection whose player has been seated, and wakes the loop to
+     * answer it. Called from the thread that ran the JOIN.
+     *
+     * @param connection The connection of the player.
+     */
+    void completeJoin(ChannelConnection connection) {
+        joined.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Sends the GAME frames of the players that have been seated.
+     */
+    private void answerJoined() {
+        ChannelConnection connection;
+        while ((connection = joined.poll()) != null) {
+            try {
+                connection.onJoined();
+            } catch (Exception e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Gets the buffer this loop encodes outgoing frames into. It is only valid
+     * until the frames have been sent.
+     *
+     * @return The cleared frame buffer.
+     */
+    ByteBuffer frameBuffer() {
+        frameBuffer.clear();
+        return frameBuffer;
+    }
+
+    /**
+     * Gets the scratch array this loop copies moves into while encoding them.
+     *
+     * @return An array of {@link Protocol#MOVES_PER_FRAME} ints.
+     */
+    int[] moves() {
+        return moves;
+    }
+
+    Control getControl() {
+        return control;
+    }
+
+    /**
+     * A connection accepted for this loop, waiting to be registered.
+     */
+    private static class Registration {
+
+        private final SocketChannel channel;
+        private final long acceptedAt;
+
+        Registration(SocketChannel channel, long acceptedAt) {
+            this.channel = channel;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
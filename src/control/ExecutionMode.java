@@ -0,0 +1,60 @@
+package control;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ExecutionMode enum lists the ways the server can run its network layer.
+ * The mode is chosen at startup with the {@code battleship.mode} system
+ * property.
+ */
+public enum ExecutionMode {
+
+    /**
+     * One thread accepts connections and serves short requests itself, while
+     * persistent connections get a thread each.
+     */
+    BLOCKING,
+
+    /**
+     * Selector event loops, one per core, serve binary connections without
+     * blocking. Other protocol versions are handed to blocking threads.
+     */
+    NIO,
+
+    /**
+     * One thread accepts connections and every connection, along with the match
+     * it plays, runs on a virtual thread of its own. Requires Java 21; older
+     * runtimes fall back to platform threads.
+     */
+    VIRTUAL;
+
+    /**
+     * Reads the mode from the {@code battleship.mode} system property.
+     *
+     * @return The selected mode, or {@link #BLOCKING} if none is set.
+     */
+    public static ExecutionMode fromProperty() {
+        String mode = System.getProperty("battleship.mode");
+        return mode == null ? BLOCKING : valueOf(mode.trim().toUpperCase());
+    }
+
+    /**
+     * Creates the executor that runs connections in this mode.
+     *
+     * @return A virtual-thread-per-task executor in {@link #VIRTUAL} mode when
+     *         the runtime supports it, a cached thread pool otherwise.
+     */
+    public ExecutorService newConnectionExecutor() {
+        if (this == VIRTUAL) {
+            try {
+                // Looked up at runtime so the server still builds and runs on Java 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not supported by this runtime, using platform threads");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+}
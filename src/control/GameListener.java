@@ -0,0 +1,50 @@
+package control;
+
+/**
+ * The GameListener interface receives the events of the server. The methods
+ * are called from the threads that serve the matches, so an implementation
+ * must return quickly and hand any slow work, such as showing a dialog, to a
+ * thread of its own.
+ */
+public interface GameListener {
+
+    /**
+     * Called once the server socket is open and accepting players.
+     *
+     * @param port The port the server is listening on.
+     */
+    void serverStarted(int port);
+
+    /**
+     * Called when matches in progress have been restored from the journal,
+     * before the server starts.
+     *
+     * @param count The number of restored matches.
+     */
+    void matchesRestored(int count);
+
+    /**
+     * Called when the router of the cluster has sent a new view of its
+     * members.
+     *
+     * @param epoch The epoch of the view.
+     * @param node  The index of this server among the members.
+     * @param nodes The number of members.
+     */
+    void clusterChanged(int epoch, int node, int nodes);
+
+    /**
+     * Called when both players of a match have joined.
+     *
+     * @param gameId The ID of the match.
+     */
+    void matchStarted(int gameId);
+
+    /**
+     * Called when a match has been won.
+     *
+     * @param gameId The ID of the match.
+     * @param winner The ID of the winning player (1 or 2).
+     */
+    void matchEnded(int gameId, int winner);
+}
@@ -0,0 +1,746 @@
+package control;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import metrics.ServerMetrics;
+import model.Board;
+import model.Model;
+import model.MoveLog;
+import model.Ship;
+
+/**
+ * The Journal class lets the matches in progress survive a restart of the
+ * server. Every change to a match is appended to a write-ahead log as a small
+ * record: a new match with its fleets, a player joining, the server's bot
+ * taking the second seat, a move, and the end of the match. Records are
+ * collected in a memory buffer, and a background thread writes and forces
+ * everything appended since its last write in one go, so a shot never waits
+ * for the disk and the disk sees one write per batch. Once woken by a record,
+ * the writer lingers a moment to let more records join the batch. A crash
+ * loses at most the records of the last millisecond or so.
+ * <p>
+ * The log is only ever appended to, in numbered segments. At a regular
+ * interval a snapshot of every open match is taken: the log moves on to a new
+ * segment, the matches are written to a snapshot file, and the segments it
+ * covers are deleted. On startup the latest snapshot is loaded and the
+ * segments written after it are replayed, skipping the records the snapshot
+ * already holds.
+ * <p>
+ * Every record is framed by its length and a CRC-32C of its body, so a record
+ * torn by a crash ends the replay of its segment.
+ * <p>
+ * The journal is kept in the directory named by {@code battleship.journal}.
+ * Snapshots are taken every {@code battleship.journal.snapshot} seconds, the
+ * writer lingers {@code battleship.journal.linger} milliseconds, and
+ * {@code battleship.journal.sync=false} skips forcing the writes to the disk.
+ */
+public class Journal implements Closeable {
+
+    private static final int CREATE = 1;
+    private static final int JOIN = 2;
+    private static final int MOVE = 3;
+    private static final int END = 4;
+    private static final int JOIN_BOT = 5;
+    // Set in the player count of a snapshot when the second seat is the bot's
+    private static final int BOT_FLAG = 0x80;
+
+    // Large enough for the creation of a match of the largest dimension
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int HEADER_SIZE = 8;
+    private static final int SHIP_SIZE = 6;
+    private static final int SNAPSHOT_MAGIC = 0x42535331;
+    private static final int DEFAULT_SNAPSHOT_SECONDS = 60;
+    private static final int DEFAULT_LINGER_MILLIS = 1;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final boolean sync;
+    private final long lingerMillis = Integer.getInteger("battleship.journal.linger", DEFAULT_LINGER_MILLIS);
+    private final SessionRegistry sessions;
+    private final ServerMetrics metrics = ServerMetrics.get();
+    private final CRC32C crc = new CRC32C();
+    private final Object snapshotLock = new Object();
+    private ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer snapshotBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private int[] moves = new int[64];
+    private int lastGameId;
+    private FileChannel channel;
+    private long segment;
+    private long openedSegment;
+    private boolean rotating;
+    private boolean writerIdle;
+    private boolean closed;
+    private Thread writer;
+    private ScheduledExecutorService snapshots;
+
+    private Journal(Path directory, boolean sync, SessionRegistry sessions) {
+        this.directory = directory;
+        this.sync = sync;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Opens the journal in a directory, restores the matches it holds into a
+     * registry, and starts logging the matches of the registry.
+     *
+     * @param directory The directory of the journal, created if missing.
+     * @param sessions  The registry the matches are restored into.
+     * @return The open journal.
+     * @throws IOException If the journal cannot be read or a new segment cannot
+     *                     be created.
+     */
+    public static Journal open(Path directory, SessionRegistry sessions) throws IOException {
+        Journal journal = new Journal(directory,
+                Boolean.parseBoolean(System.getProperty("battleship.journal.sync", "true")), sessions);
+        Files.createDirectories(directory);
+        journal.recover();
+
+        journal.channel = openSegment(directory, journal.segment);
+        journal.openedSegment = journal.segment;
+        journal.writer = new Thread(journal::writeLoop, "journal-writer");
+        journal.writer.setDaemon(true);
+        journal.writer.start();
+        sessions.setJournal(journal);
+
+        long interval = Integer.getInteger("battleship.journal.snapshot", DEFAULT_SNAPSHOT_SECONDS);
+        journal.snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        journal.snapshots.scheduleWithFixedDelay(journal::snapshotQuietly, interval, interval, TimeUnit.SECONDS);
+        return journal;
+    }
+
+    /**
+     * Logs a new match with the fleets of both boards.
+     *
+     * @param session The match that has been created.
+     */
+    void recordCreate(Session session) {
+        Model model = session.getModel();
+        Ship[] firstShips = model.getRandomizedShips(1);
+        Ship[] secondShips = model.getRandomizedShips(2);
+        int size = Short.BYTES + 2 * Integer.BYTES + (firstShips.length + secondShips.length) * SHIP_SIZE;
+
+        synchronized (this) {
+            int start = begin(CREATE, session.getGameId(), size);
+            if (start >= 0) {
+                encodeFleets(active, session.getDimension(), firstShips, secondShips);
+                end(start);
+            }
+        }
+    }
+
+    /**
+     * Logs a player joining a match.
+     *
+     * @param gameId   The ID of the match.
+     * @param playerId The ID of the player (1 or 2).
+     */
+    synchronized void recordJoin(int gameId, int playerId) {
+        int start = begin(JOIN, gameId, Byte.BYTES);
+        if (start >= 0) {
+            active.put((byte) playerId);
+            end(start);
+        }
+    }
+
+    /**
+     * Logs the server's bot taking the second seat of a match.
+     *
+     * @param gameId The ID of the match.
+     */
+    synchronized void recordBotJoin(int gameId) {
+        int start = begin(JOIN_BOT, gameId, 0);
+        if (start >= 0) {
+            end(start);
+        }
+    }
+
+    /**
+     * Logs a move of a match.
+     *
+     * @param gameId   The ID of the match.
+     * @param sequence The sequence number of the move.
+     * @param move     The move, packed as by {@link MoveLog}.
+     */
+    synchronized void recordMove(int gameId, int sequence, int move) {
+        int start = begin(MOVE, gameId, 2 * Integer.BYTES);
+        if (start >= 0) {
+            active.putInt(sequence);
+            active.putInt(move);
+            end(start);
+        }
+    }
+
+    /**
+     * Logs the end of a match, which is then no longer restored.
+     *
+     * @param gameId The ID of the match.
+     */
+    synchronized void recordEnd(int gameId) {
+        int start = begin(END, gameId, 0);
+        if (start >= 0) {
+            end(start);
+        }
+    }
+
+    /**
+     * Starts a record, waiting for the writer if the buffer is full.
+     *
+     * @param type   The type of the record.
+     * @param gameId The ID of the match.
+     * @param size   The size of the rest of the body.
+     * @return The position of the record in the buffer, or -1 if the journal
+     *         is closed.
+     */
+    private int begin(int type, int gameId, int size) {
+        boolean interrupted = false;
+        while (!closed && active.remaining() < HEADER_SIZE + Byte.BYTES + Integer.BYTES + size) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (closed) {
+            return -1;
+        }
+        int start = active.position();
+        active.position(start + HEADER_SIZE);
+        active.put((byte) type);
+        active.putInt(gameId);
+        return start;
+    }
+
+    /**
+     * Completes a record by writing its length and checksum in front of it,
+     * and wakes the writer.
+     *
+     * @param start The position returned by {@link #begin}.
+     */
+    private void end(int start) {
+        int end = active.position();
+        active.position(start + HEADER_SIZE);
+        active.limit(end);
+        crc.reset();
+        crc.update(active);
+        active.limit(active.capacity());
+        active.putInt(start, end - start - HEADER_SIZE);
+        active.putInt(start + Integer.BYTES, (int) crc.getValue());
+        // A lingering writer is only woken early when the buffer fills up
+        if (writerIdle || active.position() >= active.capacity() / 2) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes the records appended since the previous write, until the journal
+     * is closed. Whatever accumulates during a write goes out with the next
+     * one.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                boolean rotate;
+                synchronized (this) {
+                    while (active.position() == 0 && !rotating && !closed) {
+                        writerIdle = true;
+                        wait();
+                    }
+                    writerIdle = false;
+                    if (lingerMillis > 0 && !rotating && !closed) {
+                        wait(lingerMillis);
+                    }
+                    if (active.position() == 0 && !rotating) {
+                        break;
+                    }
+                    batch = active;
+                    active = flushing;
+                    flushing = batch;
+                    rotate = rotating;
+                    rotating = false;
+                    if (rotate) {
+                        segment++;
+                    }
+                    notifyAll();
+                }
+
+                long start = System.nanoTime();
+                batch.flip();
+                metrics.journalWritten(batch.remaining());
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (sync) {
+                    channel.force(false);
+                }
+                batch.clear();
+                metrics.getJournalCommit().record(System.nanoTime() - start);
+
+                if (rotate) {
+                    channel.close();
+                    FileChannel next = openSegment(directory, segment);
+                    synchronized (this) {
+                        channel = next;
+                        openedSegment = segment;
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                // Records appended from now on are dropped instead of waiting forever
+                closed = true;
+                notifyAll();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Moves the log on to a new segment, and waits until the writer has opened
+     * it.
+     *
+     * @return The number of the new segment. Every record in earlier segments
+     *         was appended before this method returned.
+     * @throws IOException If the journal has been closed.
+     */
+    private synchronized long rotate() throws IOException {
+        long next = segment + 1;
+        rotating = true;
+        notifyAll();
+        boolean interrupted = false;
+        while (openedSegment < next && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (openedSegment < next) {
+            throw new IOException("The journal is closed");
+        }
+        return next;
+    }
+
+    /**
+     * Writes a snapshot of every open match, and deletes the segments and
+     * snapshots it replaces.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            writeSnapshot(rotate());
+            metrics.getJournalSnapshot().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes the snapshot that replaces the segments before a given one.
+     *
+     * @param next The number of the first segment not covered by the snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void writeSnapshot(long next) throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + next + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = snapshotBuffer;
+            buffer.clear();
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putLong(next);
+            buffer.putInt(sessions.getLastGameId());
+            for (Session session : sessions.getSessions()) {
+                buffer = encodeMatch(buffer, session, file, checksum);
+            }
+            buffer = ensureRoom(buffer, 2 * Integer.BYTES, file, checksum);
+            buffer.putInt(0);
+            flushSnapshot(buffer, file, checksum);
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                file.write(buffer);
+            }
+            file.force(true);
+            snapshotBuffer = buffer;
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_PREFIX + next + SNAPSHOT_SUFFIX),
+                StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (numberOf(path, SEGMENT_PREFIX, SEGMENT_SUFFIX) < next) {
+                Files.delete(path);
+            }
+        }
+        for (Path path : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (numberOf(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < next) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Encodes one match into the snapshot buffer.
+     *
+     * @param buffer   The snapshot buffer.
+     * @param session  The match.
+     * @param file     The snapshot file the buffer is written to when full.
+     * @param checksum The checksum of the snapshot.
+     * @return The snapshot buffer, which may have been grown.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private ByteBuffer encodeMatch(ByteBuffer buffer, Session session, FileChannel file, CRC32C checksum)
+            throws IOException {
+        Model model = session.getModel();
+        Ship[] firstShips = model.getRandomizedShips(1);
+        Ship[] secondShips = model.getRandomizedShips(2);
+
+        // The session's methods lock the session, so this sees a consistent match
+        synchronized (session) {
+            if (session.isOver()) {
+                return buffer;
+            }
+            int moveCount = session.getMoveCount();
+            if (moves.length < moveCount) {
+                moves = new int[Math.max(moveCount, moves.length * 2)];
+            }
+            session.copyMoves(0, moves);
+
+            int size = Integer.BYTES + Short.BYTES + 2 * Integer.BYTES
+                    + (firstShips.length + secondShips.length) * SHIP_SIZE + Byte.BYTES
+                    + (1 + moveCount) * Integer.BYTES;
+            buffer = ensureRoom(buffer, size, file, checksum);
+            buffer.putInt(session.getGameId());
+            encodeFleets(buffer, session.getDimension(), firstShips, secondShips);
+            buffer.put((byte) (session.getJoinedPlayers() | (session.isAgainstBot() ? BOT_FLAG : 0)));
+            buffer.putInt(moveCount);
+            for (int i = 0; i < moveCount; i++) {
+                buffer.putInt(moves[i]);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Makes room in the snapshot buffer, writing it out or growing it.
+     *
+     * @param buffer   The snapshot buffer.
+     * @param size     The number of bytes needed.
+     * @param file     The snapshot file.
+     * @param checksum The checksum of the snapshot.
+     * @return A buffer with enough room.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private static ByteBuffer ensureRoom(ByteBuffer buffer, int size, FileChannel file, CRC32C checksum)
+            throws IOException {
+        if (buffer.remaining() >= size) {
+            return buffer;
+        }
+        flushSnapshot(buffer, file, checksum);
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the snapshot buffer to the file and empties it.
+     *
+     * @param buffer   The snapshot buffer.
+     * @param file     The snapshot file.
+     * @param checksum The checksum the written bytes are added to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private static void flushSnapshot(ByteBuffer buffer, FileChannel file, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining()) {
+            file.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Restores the matches of the latest snapshot and of the segments written
+     * after it into the registry, and picks the number of the next segment.
+     *
+     * @throws IOException If the journal cannot be read.
+     */
+    private void recover() throws IOException {
+        Map<Integer, Session> restored = new HashMap<>();
+        // Left behind by a crash while a snapshot was written
+        for (Path path : list(SNAPSHOT_PREFIX, ".tmp")) {
+            Files.delete(path);
+        }
+
+        long snapshot = 0;
+        for (Path path : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            snapshot = Math.max(snapshot, numberOf(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+        }
+        if (snapshot > 0) {
+            readSnapshot(directory.resolve(SNAPSHOT_PREFIX + snapshot + SNAPSHOT_SUFFIX), restored);
+        }
+        segment = snapshot;
+        for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            long number = numberOf(path, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            if (number >= snapshot) {
+                readSegment(path, restored);
+            }
+            segment = Math.max(segment, number);
+        }
+        // Never append to a segment that may end with a torn record
+        segment++;
+
+        List<Session> open = new ArrayList<>();
+        for (Session session : restored.values()) {
+            if (!session.isOver()) {
+                open.add(session);
+            }
+        }
+        Collections.sort(open, (a, b) -> Integer.compare(a.getGameId(), b.getGameId()));
+        for (Session session : open) {
+            sessions.restore(session);
+        }
+        // Game IDs of ended matches are not handed out again
+        sessions.restoreLastGameId(lastGameId);
+    }
+
+    /**
+     * Restores the matches of a snapshot.
+     *
+     * @param path     The snapshot file.
+     * @param restored The restored matches, keyed by game ID.
+     * @throws IOException If the snapshot cannot be read or is corrupt.
+     */
+    private void readSnapshot(Path path, Map<Integer, Session> restored) throws IOException {
+        ByteBuffer buffer = map(path);
+        CRC32C checksum = new CRC32C();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(Math.max(0, buffer.limit() - Integer.BYTES));
+        checksum.update(content);
+        if (buffer.limit() < 20 || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt(buffer.limit() - Integer.BYTES) != (int) checksum.getValue()) {
+            throw new IOException("The snapshot " + path + " is corrupt");
+        }
+        buffer.getLong();
+        lastGameId = Math.max(lastGameId, buffer.getInt());
+
+        int gameId;
+        while ((gameId = buffer.getInt()) != 0) {
+            Session session = decodeMatch(buffer, gameId);
+            int players = buffer.get();
+            if ((players & BOT_FLAG) != 0) {
+                session.restoreBot();
+            }
+            session.restorePlayers(players & ~BOT_FLAG);
+            int moveCount = buffer.getInt();
+            for (int i = 0; i < moveCount; i++) {
+                session.replay(i, buffer.getInt());
+            }
+            restored.put(gameId, session);
+        }
+    }
+
+    /**
+     * Replays the records of a segment, up to the first one that is torn.
+     *
+     * @param path     The segment file.
+     * @param restored The restored matches, keyed by game ID.
+     * @throws IOException If the segment cannot be read.
+     */
+    private void readSegment(Path path, Map<Integer, Session> restored) throws IOException {
+        ByteBuffer buffer = map(path);
+        CRC32C checksum = new CRC32C();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length < Byte.BYTES + Integer.BYTES || length > buffer.remaining()) {
+                return;
+            }
+            int end = buffer.position() + length;
+            ByteBuffer body = buffer.duplicate();
+            body.limit(end);
+            checksum.reset();
+            checksum.update(body);
+            if ((int) checksum.getValue() != expected) {
+                return;
+            }
+
+            int type = buffer.get();
+            int gameId = buffer.getInt();
+            lastGameId = Math.max(lastGameId, gameId);
+            Session session = restored.get(gameId);
+            if (type == CREATE && session == null) {
+                restored.put(gameId, decodeMatch(buffer, gameId));
+            } else if (type == JOIN && session != null) {
+                session.restorePlayers(buffer.get());
+            } else if (type == JOIN_BOT && session != null) {
+                session.restoreBot();
+            } else if (type == MOVE && session != null) {
+                session.replay(buffer.getInt(), buffer.getInt());
+            } else if (type == END) {
+                restored.remove(gameId);
+            }
+            // Records already held by the snapshot are skipped
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * Decodes the fleets of a match and builds its session.
+     *
+     * @param buffer The buffer positioned at the dimension of the match.
+     * @param gameId The ID of the match.
+     * @return The session, before any move.
+     */
+    private Session decodeMatch(ByteBuffer buffer, int gameId) {
+        int dimension = buffer.getShort();
+        Model model = new Model();
+        model.setDimension(dimension);
+        model.placeShips(1, decodeFleet(buffer, dimension * 2));
+        model.placeShips(2, decodeFleet(buffer, dimension * 2));
+        return new Session(gameId, dimension, model, this);
+    }
+
+    /**
+     * Encodes the dimension and both fleets of a match, each ship as its
+     * length, first cell and orientation.
+     *
+     * @param buffer      The buffer the fleets are appended to.
+     * @param dimension   The dimension of the game board.
+     * @param firstShips  The ships of the first board.
+     * @param secondShips The ships of the second board.
+     */
+    private static void encodeFleets(ByteBuffer buffer, int dimension, Ship[] firstShips, Ship[] secondShips) {
+        buffer.putShort((short) dimension);
+        for (Ship[] ships : new Ship[][] { firstShips, secondShips }) {
+            buffer.putInt(ships.length);
+            for (Ship ship : ships) {
+                buffer.put((byte) ship.getLength());
+                buffer.putInt(Board.toCell(ship.getRow(), ship.getCol(), dimension * 2));
+                buffer.put((byte) (ship.isHorizontal() ? 1 : 0));
+            }
+        }
+    }
+
+    private static Ship[] decodeFleet(ByteBuffer buffer, int size) {
+        Ship[] ships = new Ship[buffer.getInt()];
+        for (int i = 0; i < ships.length; i++) {
+            int length = buffer.get();
+            int cell = buffer.getInt();
+            ships[i] = new Ship(length, buffer.get() == 1);
+            ships[i].setCoordinates(Board.rowOf(cell, size), Board.colOf(cell, size));
+        }
+        return ships;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+    }
+
+    private static FileChannel openSegment(Path directory, long number) throws IOException {
+        return FileChannel.open(directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Lists the files of the journal of one kind, in the order of their
+     * numbers.
+     *
+     * @param prefix The prefix of their names.
+     * @param suffix The suffix of their names.
+     * @return The files.
+     * @throws IOException If the directory cannot be read.
+     */
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                if (numberOf(path, prefix, suffix) >= 0) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort((a, b) -> Long.compare(numberOf(a, prefix, suffix), numberOf(b, prefix, suffix)));
+        return paths;
+    }
+
+    private static long numberOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops taking snapshots, and writes the records that have been appended.
+     * Records appended later are dropped.
+     */
+    @Override
+    public void close() {
+        snapshots.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
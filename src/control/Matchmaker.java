@@ -0,0 +1,247 @@
+package control;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import metrics.ServerMetrics;
+import model.Model;
+
+/**
+ * The Matchmaker class pairs joining players. Each board dimension has a
+ * lock-free slot holding the session whose first player waits for an
+ * opponent. A joining player takes the session out of the slot and its second
+ * seat, or opens a new session and publishes it in the empty slot. The slot is
+ * claimed and published atomically, so two players arriving together always
+ * meet, and joins only contend with those of the same dimension, never on a
+ * lock shared by the whole server. Sessions restored after a restart wait in
+ * a lock-free queue of their dimension, which joining players empty first.
+ * <p>
+ * A player still alone after {@code battleship.match.timeout} milliseconds,
+ * 10000 by default, is given the server's bot as opponent; 0 makes players
+ * wait for a human opponent however long it takes. The lobbies are swept for
+ * such players every tenth of a second rather than timed one by one, so a join
+ * does not go through the lock of a scheduler. The time every player waits for
+ * an opponent is recorded in the {@link ServerMetrics}.
+ */
+public class Matchmaker {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+    private static final long SWEEP_MILLIS = 100;
+
+    private final SessionRegistry sessions;
+    private final Consumer<Session> botSeated;
+    private final long timeoutMillis = Long.getLong("battleship.match.timeout", DEFAULT_TIMEOUT_MILLIS);
+    private final Lobby[] lobbies = new Lobby[Model.MAX_DIMENSION + 1];
+    private final LongAdder waiting = new LongAdder();
+    private final LongAdder botFallbacks;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "matchmaker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a Matchmaker.
+     *
+     * @param sessions  The registry new sessions are created in.
+     * @param botSeated Called when the bot has taken the seat of a missing
+     *                  opponent, on the matchmaker's thread.
+     */
+    public Matchmaker(SessionRegistry sessions, Consumer<Session> botSeated) {
+        this.sessions = sessions;
+        this.botSeated = botSeated;
+        for (int dimension = 1; dimension < lobbies.length; dimension++) {
+            lobbies[dimension] = new Lobby();
+        }
+        ServerMetrics metrics = ServerMetrics.get();
+        metrics.setPlayersWaiting(waiting::sum);
+        botFallbacks = metrics.getBotFallbacks();
+        if (timeoutMillis > 0) {
+            long period = Math.min(timeoutMillis, SWEEP_MILLIS);
+            timer.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Places a joining player in a match of the given dimension.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The player seated in the match.
+     */
+    public Player join(int dimension) {
+        Lobby lobby = lobbies[dimension];
+        Session session;
+        while ((session = lobby.restored.poll()) != null) {
+            waiting.decrement();
+            Player player = seat(session);
+            if (player != null) {
+                return player;
+            }
+        }
+
+        Session mine = null;
+        while (true) {
+            session = lobby.open.getAndSet(null);
+            if (session != null) {
+                waiting.decrement();
+                Player player = seat(session);
+                if (player != null) {
+                    if (mine != null) {
+                        discard(mine);
+                    }
+                    return player;
+                }
+                continue;
+            }
+
+            if (mine == null) {
+                mine = sessions.create(dimension);
+                sessions.recordJoin(mine, mine.addPlayer());
+            }
+            waiting.increment();
+            if (lobby.open.compareAndSet(null, mine)) {
+                return new Player(mine, 1);
+            }
+            waiting.decrement();
+            // Another player has just published a session, which this one joins
+        }
+    }
+
+    /**
+     * Seats a joining player in a session taken out of its lobby. A session
+     * restored with no player goes back to the queue for the second one.
+     *
+     * @param session The session.
+     * @return The player seated, or {@code null} if the session has been
+     *         given to the bot or abandoned.
+     */
+    private Player seat(Session session) {
+        int id = session.addPlayer();
+        if (id == 0) {
+            return null;
+        }
+        sessions.recordJoin(session, id);
+        if (session.isFull()) {
+            ServerMetrics.get().getMatchWait().record(System.nanoTime() - session.getCreatedAt());
+        } else {
+            enqueue(session);
+        }
+        return new Player(session, id);
+    }
+
+    /**
+     * Ends a session opened by a joining player that has then taken the seat
+     * of another player's session. Only its creator ever saw it.
+     *
+     * @param session The unused session.
+     */
+    private void discard(Session session) {
+        session.forfeit();
+        sessions.remove(session);
+    }
+
+    /**
+     * Places a joining player in a new match against the server's bot.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The player seated in the match.
+     */
+    public Player joinBot(int dimension) {
+        Session session = sessions.create(dimension);
+        int id = session.addPlayer();
+        sessions.recordJoin(session, id);
+        session.addBot();
+        return new Player(session, id);
+    }
+
+    /**
+     * Queues a session whose players wait for an opponent, as when it has been
+     * restored after a restart.
+     *
+     * @param session The session.
+     */
+    public void enqueue(Session session) {
+        lobbies[session.getDimension()].restored.add(session);
+        waiting.increment();
+    }
+
+    /**
+     * Takes a session out of its lobby, as when it has been abandoned before
+     * an opponent came.
+     *
+     * @param session The session.
+     */
+    public void remove(Session session) {
+        Lobby lobby = lobbies[session.getDimension()];
+        if (lobby.open.compareAndSet(session, null) || lobby.restored.remove(session)) {
+            waiting.decrement();
+        }
+    }
+
+    /**
+     * Gives the server's bot the missing seat of every session that has waited
+     * longer than the timeout. Restored sessions are queued in the order they
+     * were restored, so each queue is only read up to the first recent one.
+     */
+    private void sweep() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (int dimension = 1; dimension < lobbies.length; dimension++) {
+                Lobby lobby = lobbies[dimension];
+                Session session = lobby.open.get();
+                if (session != null && session.getCreatedAt() - deadline <= 0
+                        && lobby.open.compareAndSet(session, null)) {
+                    waiting.decrement();
+                    seatBot(session);
+                }
+                Queue<Session> queue = lobby.restored;
+                while ((session = queue.peek()) != null && session.getCreatedAt() - deadline <= 0) {
+                    if (queue.remove(session)) {
+                        waiting.decrement();
+                        seatBot(session);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // A failed sweep must not cancel the next ones
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gives the server's bot the missing seat of a session, unless an opponent
+     * has just taken it.
+     *
+     * @param session The session, taken out of its lobby.
+     */
+    private void seatBot(Session session) {
+        if (session.addBot()) {
+            botFallbacks.increment();
+            ServerMetrics.get().getMatchWait().record(System.nanoTime() - session.getCreatedAt());
+            botSeated.accept(session);
+        }
+    }
+
+    /**
+     * Gets the number of players waiting for an opponent.
+     *
+     * @return The number of waiting players.
+     */
+    public long getWaiting() {
+        return waiting.sum();
+    }
+
+    /**
+     * The waiting sessions of one dimension.
+     */
+    private static class Lobby {
+        private final AtomicReference<Session> open = new AtomicReference<>();
+        private final Queue<Session> restored = new ConcurrentLinkedQueue<>();
+    }
+}
@@ -0,0 +1,39 @@
+package control;
+
+/**
+ * The Player class identifies a player seated in a match.
+ */
+public class Player {
+
+    private final Session session;
+    private final int id;
+
+    /**
+     * Constructs a Player seated in the given session.
+     *
+     * @param session The match the player has joined.
+     * @param id      The ID of the player (1 or 2).
+     */
+    public Player(Session session, int id) {
+        this.session = session;
+        this.id = id;
+    }
+
+    /**
+     * Gets the match the player has joined.
+     *
+     * @return The session of the player.
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Gets the ID of the player, which is also the ID of the player's own board.
+     *
+     * @return The ID of the player (1 or 2).
+     */
+    public int getId() {
+        return id;
+    }
+}
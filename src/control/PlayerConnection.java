@@ -0,0 +1,105 @@
+package control;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+import metrics.ServerMetrics;
+
+/**
+ * The PlayerConnection class serves a player who keeps one connection open for
+ * the whole match. The player joins a match, then shots are read and answered
+ * on the same socket until the match is over or the player disconnects.
+ * <p>
+ * A client may watch a match instead, in which case the moves of the match are
+ * sent until it is over, or play against the server's bot.
+ * <p>
+ * A player that sends nothing for the idle timeout is evicted: the socket is
+ * closed under the blocked read, which ends the connection.
+ */
+public class PlayerConnection implements Runnable {
+
+    private final Control control;
+    private final Socket socket;
+    private final Codec codec;
+    private volatile boolean evicted;
+
+    /**
+     * Constructs a PlayerConnection for a connected player.
+     *
+     * @param control The controller placing the player in a match.
+     * @param socket  The socket of the player.
+     * @param codec   The codec of the protocol version spoken by the player.
+     */
+    public PlayerConnection(Control control, Socket socket, Codec codec) {
+        this.control = control;
+        this.socket = socket;
+        this.codec = codec;
+    }
+
+    @Override
+    public void run() {
+        TimerWheel.Timeout idleTimeout = control.startIdleTimeout(this::evict);
+        codec.setIdleTimeout(idleTimeout);
+        try {
+            int watchedGameId = codec.readJoin();
+            if (watchedGameId > 0) {
+                // A spectator only listens, and leaves with the match
+                idleTimeout.cancel();
+                Spectator spectator = control.watch(watchedGameId, null);
+                try {
+                    codec.watch(spectator);
+                } finally {
+                    if (spectator != null) {
+                        spectator.cancel();
+                    }
+                }
+                return;
+            }
+            Player player = watchedGameId == Codec.AGAINST_BOT ? control.joinBot(codec.getDimension())
+                    : control.joinPlayer(codec.getDimension());
+            Session session = player.getSession();
+            codec.writeGame(player);
+
+            // Every shot is filled into the same turn, so a move allocates nothing
+            Turn lastTurn = new Turn();
+            while (!session.isOver()) {
+                codec.readShot();
+
+                Turn turn = control.validateShot(session, codec.getTargetId(), codec.getRow(),
+                        codec.getCol(), lastTurn);
+                long start = System.nanoTime();
+                codec.writeTurn(turn);
+                ServerMetrics.get().getResponseWrite().record(System.nanoTime() - start);
+
+                if (turn.getWinner() != 0) {
+                    control.endGame(session, turn.getWinner());
+                }
+            }
+        } catch (EOFException e) {
+            // The player has closed the connection
+        } catch (Exception e) {
+            if (!evicted) {
+                e.printStackTrace();
+            }
+        } finally {
+            idleTimeout.cancel();
+            codec.close();
+            control.close(socket);
+        }
+    }
+
+    /**
+     * Closes the connection of a player that has been idle for too long.
+     * Called on the thread of the timer wheel.
+     */
+    private void evict() {
+        evicted = true;
+        ServerMetrics.get().getIdleEvictions().increment();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package control;
+
+/**
+ * The Protocol class holds the constants of the wire protocol.
+ * <p>
+ * A client negotiates a version by sending {@link #hello(int)} as its first
+ * int. The server answers with the hello of the version it will speak, which is
+ * the lower of the two. Version {@link #VERSION_SERIALIZED} keeps the object
+ * streams of a persistent connection, version {@link #VERSION_BINARY} switches
+ * to frames made of an unsigned short length, an opcode byte and the payload.
+ * Version {@link #VERSION_WIDE} keeps the frames but sends every cell as its
+ * index on the board, counted row by row from 0, so boards are no longer
+ * limited to what fits in a byte.
+ * Clients that do not negotiate keep using the request types of
+ * {@link Control}.
+ */
+public final class Protocol {
+
+    /** The marker in the upper half of a hello. */
+    public static final int MAGIC = 0x4253;
+    /** The version that keeps the serialized object streams. */
+    public static final int VERSION_SERIALIZED = 1;
+    /** The version that uses binary frames. */
+    public static final int VERSION_BINARY = 2;
+    /** The version that sends cell indexes instead of rows and columns. */
+    public static final int VERSION_WIDE = 3;
+    /** The highest version spoken by this server. */
+    public static final int VERSION = VERSION_WIDE;
+
+    // Client to server
+    /**
+     * Joins a match. Optional payload: the dimension of the board (short), the
+     * server's dimension when missing or out of range. The player is paired
+     * with another player asking for the same dimension, or with the server's
+     * bot after a while.
+     */
+    public static final int JOIN = 0x01;
+    /**
+     * Fires a shot. Payload: target ID, row, column, optionally followed by the
+     * sequence number (int) of the first move the client has not received. In
+     * version 3 the row and column are replaced by the cell index (int).
+     */
+    public static final int SHOT = 0x02;
+    /**
+     * Asks for the moves of the match from a sequence number on. Payload: the
+     * sequence number (int), 0 for the full history.
+     */
+    public static final int LOG = 0x03;
+    /**
+     * Watches a match as a spectator instead of joining it. Payload: game ID
+     * (int). Answered with {@link #MOVES} frames, from the first move on, until
+     * {@link #MATCH_OVER}.
+     */
+    public static final int WATCH = 0x04;
+    /**
+     * Joins a new match against the server's bot, as player 1. Same payload as
+     * {@link #JOIN}. The bot answers each shot at once, so every {@link #HIT}
+     * or {@link #MISSED} carries the bot's shot as the opponent's previous
+     * shot, and the winner when the bot's shot ends the match.
+     */
+    public static final int JOIN_BOT = 0x05;
+    /**
+     * Keeps the connection of a player open while it has nothing else to send.
+     * No payload. Answered with {@link #HEARTBEAT_ACK}. A player connection that
+     * sends no frame for {@code battleship.idle.timeout} milliseconds is
+     * closed.
+     */
+    public static final int HEARTBEAT = 0x06;
+
+    // Server to client
+    /**
+     * Describes the match. Payload: game ID (int), player ID, dimension, then the
+     * player's fleet and the opponent's fleet, each as a ship count (short)
+     * followed by length, row, column and orientation of every ship. In version
+     * 3 the dimension is a short and the fleets are replaced by the ship count
+     * (int) of each, sent in {@link #FLEET} frames right after.
+     */
+    public static final int GAME = 0x10;
+    /**
+     * The shot hit a ship. Payload: index of the last ship hit on the target
+     * board (short, -1 if none), its remaining health, row and column of the
+     * opponent's previous shot (0 if none), whether that shot hit, health of the
+     * target board, health of the shooter's board. In version 3 the row and
+     * column of the previous shot are replaced by its cell index (int, -1 if
+     * none).
+     */
+    public static final int HIT = 0x11;
+    /** The shot missed. Same payload as {@link #HIT}. */
+    public static final int MISSED = 0x12;
+    /** The shot was out of turn or the match is over. No payload. */
+    public static final int INVALID_SHOT = 0x13;
+    /**
+     * Moves of the match the client has not received yet. Sent after every
+     * result and in answer to {@link #LOG}. Payload: sequence number of the
+     * first move (int), move count (short), then every move packed in an int as
+     * by {@link model.MoveLog}.
+     */
+    public static final int MOVES = 0x14;
+    /**
+     * The watched match is over and the server closes the connection. Payload:
+     * ID of the winner, 0 if the match does not exist. A player is sent it
+     * after {@link #INVALID_SHOT} when its match has ended without its
+     * knowing, as when a player let the turn timeout pass and forfeited.
+     */
+    public static final int MATCH_OVER = 0x15;
+    /**
+     * Part of a fleet, sent after {@link #GAME} in version 3. Payload: 1 for the
+     * player's fleet or 2 for the opponent's, index of the first ship (int),
+     * ship count (short), then length, cell index (int) and orientation of
+     * every ship.
+     */
+    public static final int FLEET = 0x16;
+    /** Answers a {@link #HEARTBEAT}. No payload. */
+    public static final int HEARTBEAT_ACK = 0x17;
+    /** The largest number of moves sent in one {@link #MOVES} frame. */
+    public static final int MOVES_PER_FRAME = 256;
+
+    private Protocol() {
+    }
+
+    /**
+     * Builds the hello int for a version.
+     *
+     * @param version The protocol version.
+     * @return The int sent to negotiate that version.
+     */
+    public static int hello(int version) {
+        return MAGIC << 16 | version;
+    }
+
+    /**
+     * Checks whether the first int of a connection is a hello.
+     *
+     * @param request The first int sent by the client.
+     * @return {@code true} if the client is negotiating a version.
+     */
+    public static boolean isHello(int request) {
+        return request >>> 16 == MAGIC;
+    }
+}
@@ -0,0 +1,44 @@
+package control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The ResponseBuffer class collects a whole response before it is sent, so the
+ * streams layered on top of it can write field by field while the socket sees
+ * a single write per response.
+ */
+public class ResponseBuffer extends ByteArrayOutputStream {
+
+    /**
+     * Constructs an empty ResponseBuffer.
+     *
+     * @param size The initial capacity in bytes.
+     */
+    public ResponseBuffer(int size) {
+        super(size);
+    }
+
+    /**
+     * Sends everything collected so far in a single write, and clears the
+     * buffer for the next response.
+     *
+     * @param outputStream The stream of the connection.
+     * @throws IOException If an error occurs during communication.
+     */
+    public void sendTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buf, 0, count);
+        outputStream.flush();
+        reset();
+    }
+
+    /**
+     * Gets the number of bytes the buffer holds without growing.
+     *
+     * @return The capacity in bytes.
+     */
+    public int capacity() {
+        return buf.length;
+    }
+}
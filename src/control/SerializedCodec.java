@@ -0,0 +1,218 @@
+package control;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import metrics.ServerMetrics;
+import model.Board;
+import model.Model;
+import model.Ship;
+
+/**
+ * The SerializedCodec class speaks protocol version
+ * {@link Protocol#VERSION_SERIALIZED}: every message of the connection goes
+ * through one pair of object streams. The output stream writes into a pooled
+ * {@link ResponseBuffer}, which is sent to the socket once per message.
+ */
+public class SerializedCodec implements Codec {
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final BufferPool buffers;
+    private final ResponseBuffer buffer;
+    private Session session;
+    private final ObjectOutputStream objectOutputStream;
+    private ObjectInputStream objectInputStream;
+    private int targetId;
+    private int row;
+    private int col;
+    private TimerWheel.Timeout idleTimeout;
+
+    /**
+     * Constructs a SerializedCodec on the streams of a connected player.
+     *
+     * @param inputStream  The stream the player's messages are read from.
+     * @param outputStream The stream messages are sent to.
+     * @param buffers      The pool the output buffer is taken from.
+     * @throws IOException If the object stream cannot be opened.
+     */
+    public SerializedCodec(InputStream inputStream, OutputStream outputStream, BufferPool buffers)
+            throws IOException {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.buffers = buffers;
+        this.buffer = buffers.take();
+        // The stream header goes out with the first message
+        this.objectOutputStream = new ObjectOutputStream(buffer);
+    }
+
+    @Override
+    public void setIdleTimeout(TimerWheel.Timeout idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public int readJoin() {
+        // Joining is implied by the request type or the negotiated version
+        return 0;
+    }
+
+    @Override
+    public int getDimension() {
+        return 0;
+    }
+
+    @Override
+    public void writeGame(Player player) throws IOException {
+        int id = player.getId();
+        session = player.getSession();
+        Model model = session.getModel();
+
+        objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 1 : 2));
+        objectOutputStream.writeObject(model.getRandomizedShips(id == 1 ? 2 : 1));
+        objectOutputStream.writeInt(session.getDimension());
+        objectOutputStream.writeInt(id);
+        objectOutputStream.writeInt(session.getGameId());
+        send();
+    }
+
+    @Override
+    public void readShot() throws IOException {
+        if (objectInputStream == null) {
+            objectInputStream = new ObjectInputStream(inputStream);
+        }
+        targetId = objectInputStream.readInt();
+        if (idleTimeout != null) {
+            idleTimeout.touch();
+        }
+        long start = System.nanoTime();
+        try {
+            String coordinate = (String) objectInputStream.readObject();
+            row = Board.parseRow(coordinate);
+            col = Board.parseCol(coordinate);
+            ServerMetrics.get().getShotDecode().record(System.nanoTime() - start);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public int getTargetId() {
+        return targetId;
+    }
+
+    @Override
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public int getCol() {
+        return col;
+    }
+
+    @Override
+    public void writeTurn(Turn turn) throws IOException {
+        // Every turn sends a fresh copy of the ship, which must not be kept as a back reference
+        objectOutputStream.reset();
+        objectOutputStream.writeInt(resultOf(turn));
+        if (turn.isValid()) {
+            writeTurn(turn, session, objectOutputStream, objectOutputStream);
+        }
+        send();
+    }
+
+    @Override
+    public void watch(Spectator spectator) throws IOException {
+        throw new IOException("Spectators need protocol version " + Protocol.VERSION_BINARY);
+    }
+
+    @Override
+    public void close() {
+        buffers.release(buffer);
+    }
+
+    /**
+     * Sends the message written to the object stream in a single write.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    private void send() throws IOException {
+        objectOutputStream.flush();
+        buffer.sendTo(outputStream);
+    }
+
+    /**
+     * Gets the result code of a shot as sent in the serialized protocol.
+     *
+     * @param turn The outcome of the shot.
+     * @return {@link Control#HIT}, {@link Control#MISSED} or
+     *         {@link Control#INVALID_SHOT}.
+     */
+    public static int resultOf(Turn turn) {
+        return turn.isValid() ? (turn.isHit() ? Control.HIT : Control.MISSED) : Control.INVALID_SHOT;
+    }
+
+    /**
+     * Writes the response to a single-shot request: the result code, then the
+     * outcome of a valid shot on a new object stream.
+     *
+     * @param turn    The outcome of the shot.
+     * @param session The match the shot belongs to.
+     * @param buffer  The buffer the response is collected in.
+     * @throws IOException If the response cannot be encoded.
+     */
+    public static void writeResponse(Turn turn, Session session, ResponseBuffer buffer) throws IOException {
+        DataOutputStream dataOutputStream = new DataOutputStream(buffer);
+        dataOutputStream.writeInt(resultOf(turn));
+        if (turn.isValid()) {
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(dataOutputStream);
+            writeTurn(turn, session, dataOutputStream, objectOutputStream);
+            objectOutputStream.flush();
+        }
+    }
+
+    /**
+     * Describes the ship last hit on the target board of a shot, as clients of
+     * the serialized protocol expect it.
+     *
+     * @param turn    The outcome of the shot.
+     * @param session The match the shot belongs to.
+     * @return A copy of the ship with its health after the shot, or
+     *         {@code null} if no ship of the board has been hit.
+     */
+    private static Ship shipOf(Turn turn, Session session) {
+        if (turn.getShipIndex() < 0) {
+            return null;
+        }
+        Ship ship = session.getModel().getRandomizedShips(turn.getTargetId())[turn.getShipIndex()];
+        return ship.withHealth(turn.getShipHealth());
+    }
+
+    /**
+     * Writes the outcome of a valid shot, after its result code, in the order
+     * the client reads it.
+     *
+     * @param turn               The outcome of the shot.
+     * @param session            The match the shot belongs to.
+     * @param dataOutput         The output for primitive values.
+     * @param objectOutputStream The output for objects.
+     * @throws IOException If an error occurs during communication.
+     */
+    public static void writeTurn(Turn turn, Session session, DataOutput dataOutput,
+            ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.writeObject(shipOf(turn, session));
+        objectOutputStream.writeObject(Board.toCoordinate(turn.getPreviousRow(), turn.getPreviousCol()));
+        objectOutputStream.flush();
+        dataOutput.writeBoolean(turn.isPreviousHit());
+        dataOutput.writeInt(turn.getTargetHealth());
+        dataOutput.writeInt(turn.getPlayerHealth());
+        // Older clients expect the whole game progress after every shot
+        objectOutputStream.writeObject(session.getRecord(turn.getMoveCount()));
+    }
+}
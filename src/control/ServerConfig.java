@@ -0,0 +1,130 @@
+package control;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The ServerConfig class holds the settings the server is started with. Every
+ * setting is a {@code battleship.*} system property, so it can be given with
+ * {@code -D} on the command line, as {@code --name=value} in the program
+ * arguments, or in a properties file named by {@code --config=path}.
+ * <p>
+ * Program arguments take precedence over {@code -D} options, which take
+ * precedence over the properties file. Settings read by other classes, such as
+ * {@code battleship.mode}, are configured the same way.
+ */
+public class ServerConfig {
+
+    /** The prefix of the system properties holding the settings. */
+    public static final String PREFIX = "battleship.";
+
+    private static final int DEFAULT_PORT = 5000;
+    private static final int DEFAULT_DIMENSION = 1;
+
+    private final int port;
+    private final int dimension;
+    private final boolean headless;
+
+    /**
+     * Constructs a ServerConfig.
+     *
+     * @param port      The port number for the server socket.
+     * @param dimension The dimension of the game boards.
+     * @param headless  {@code true} to run without a window.
+     */
+    public ServerConfig(int port, int dimension, boolean headless) {
+        this.port = port;
+        this.dimension = dimension;
+        this.headless = headless;
+    }
+
+    /**
+     * Reads the settings from the program arguments, the system properties and
+     * the configuration file. The arguments and the file are copied into the
+     * system properties.
+     *
+     * @param args The program arguments, each {@code --name=value} or
+     *             {@code --name} for a setting that is switched on.
+     * @return The settings of the server.
+     * @throws IOException If the configuration file cannot be read.
+     * @throws IllegalArgumentException If an argument is not a setting.
+     */
+    public static ServerConfig fromArgs(String[] args) throws IOException {
+        Properties arguments = parseArgs(args, PREFIX);
+
+        String config = arguments.getProperty(PREFIX + "config", System.getProperty(PREFIX + "config"));
+        if (config != null) {
+            Properties file = new Properties();
+            try (InputStream inputStream = Files.newInputStream(Paths.get(config))) {
+                file.load(inputStream);
+            }
+            for (String name : file.stringPropertyNames()) {
+                String key = name.startsWith(PREFIX) ? name : PREFIX + name;
+                if (System.getProperty(key) == null) {
+                    System.setProperty(key, file.getProperty(name));
+                }
+            }
+        }
+        for (String name : arguments.stringPropertyNames()) {
+            System.setProperty(name, arguments.getProperty(name));
+        }
+
+        return new ServerConfig(Integer.getInteger(PREFIX + "port", DEFAULT_PORT),
+                Integer.getInteger(PREFIX + "dimension", DEFAULT_DIMENSION),
+                Boolean.getBoolean(PREFIX + "headless"));
+    }
+
+    /**
+     * Parses program arguments of the form {@code --name=value}, or
+     * {@code --name} for a setting that is switched on.
+     *
+     * @param args   The program arguments.
+     * @param prefix The prefix added to every name.
+     * @return The values keyed by prefixed name.
+     * @throws IllegalArgumentException If an argument does not start with
+     *                                  {@code --}.
+     */
+    public static Properties parseArgs(String[] args, String prefix) {
+        Properties arguments = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? "true" : arg.substring(separator + 1);
+            arguments.setProperty(prefix + name, value);
+        }
+        return arguments;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port number.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the dimension of the server's matches.
+     *
+     * @return The dimension of the game board.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Tells whether the server runs without its window.
+     *
+     * @return {@code true} for a headless server.
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+}
@@ -0,0 +1,481 @@
+package control;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+
+import metrics.ServerMetrics;
+import model.Board;
+import model.DensityTargeter;
+import model.Model;
+import model.MoveLog;
+import model.ShotResult;
+
+/**
+ * The Session class represents a single match hosted by the server. Each
+ * session owns its own model and turn state, so that many matches can be
+ * played at the same time on one server. Every method locks the session, and
+ * every move is logged to the {@link Journal} if there is one. The lock of each
+ * session is its own, so matches are played in parallel on as many threads as
+ * there are cores, and the outcome of each shot leaves the lock in a
+ * {@link Turn} owned by the shooter.
+ * <p>
+ * In a match against the server's bot, the bot holds the second seat and
+ * answers every shot of the player at once, under the same lock, so the
+ * result sent to the player already carries the bot's shot.
+ * <p>
+ * A session may be given a turn timeout on the {@link TimerWheel}, which every
+ * join and move pushes back. When it fires, the player to move forfeits, and a
+ * session still waiting for its second player is abandoned.
+ */
+public class Session {
+
+    private final int gameId;
+    private final int dimension;
+    private final Model model;
+    private final Journal journal;
+    private final long createdAt = System.nanoTime();
+    private int joinedPlayers;
+    private int currentTargetId;
+    private boolean over;
+    private int winner;
+    private Broadcast broadcast;
+    private DensityTargeter bot;
+    private TimerWheel.Timeout turnTimeout;
+
+    private int previousRow;
+    private int previousCol;
+    private boolean previousHit;
+
+    /**
+     * Constructs a Session playing on the given boards.
+     *
+     * @param gameId    The unique ID of the match.
+     * @param dimension The dimension of the game board.
+     * @param model     The model whose ships have been placed on both boards.
+     */
+    public Session(int gameId, int dimension, Model model) {
+        this(gameId, dimension, model, null);
+    }
+
+    /**
+     * Constructs a Session playing on the given boards, whose moves are logged
+     * to a journal.
+     *
+     * @param gameId    The unique ID of the match.
+     * @param dimension The dimension of the game board.
+     * @param model     The model whose ships have been placed on both boards.
+     * @param journal   The journal the moves are logged to, or {@code null}.
+     */
+    public Session(int gameId, int dimension, Model model, Journal journal) {
+        this.gameId = gameId;
+        this.dimension = dimension;
+        this.model = model;
+        this.journal = journal;
+        this.currentTargetId = 2;
+    }
+
+    /**
+     * Registers a new player in this session.
+     *
+     * @return The ID assigned to the player (1 or 2), or 0 if the session is
+     *         already full.
+     */
+    public synchronized int addPlayer() {
+        if (joinedPlayers == 2 || over) {
+            return 0;
+        }
+        touchTurnTimeout();
+        return ++joinedPlayers;
+    }
+
+    /**
+     * Seats the server's bot as the second player. The bot fires at the first
+     * player's board after each of the player's shots, and at once if the
+     * player has already fired.
+     *
+     * @return {@code true} if the bot has been seated, {@code false} if the
+     *         session does not hold exactly one player or has been abandoned.
+     */
+    synchronized boolean addBot() {
+        if (joinedPlayers != 1 || over) {
+            return false;
+        }
+        touchTurnTimeout();
+        seatBot();
+        if (journal != null) {
+            journal.recordBotJoin(gameId);
+        }
+        if (currentTargetId == 1 && !over) {
+            shootBot();
+            if (broadcast != null) {
+                broadcast.publish();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the server's bot in the second seat of a match read from the
+     * journal. The moves replayed afterwards are fed to the bot, so it goes on
+     * hunting where it stopped.
+     */
+    synchronized void restoreBot() {
+        if (bot == null) {
+            seatBot();
+        }
+    }
+
+    /**
+     * Fires the shot of a restored bot if the match was stopped before the
+     * bot could answer the player.
+     */
+    synchronized void resumeBot() {
+        if (bot != null && currentTargetId == 1 && !over) {
+            shootBot();
+        }
+    }
+
+    private void seatBot() {
+        bot = new DensityTargeter(new SplittableRandom());
+        bot.reset(dimension, model.getRandomizedShips(1));
+        joinedPlayers = 2;
+    }
+
+    /**
+     * Sets the turn timeout of the session, which is pushed back by every join
+     * and move, and cancelled when the match ends.
+     *
+     * @param turnTimeout The timeout, started by the caller.
+     */
+    synchronized void setTurnTimeout(TimerWheel.Timeout turnTimeout) {
+        this.turnTimeout = turnTimeout;
+        if (over) {
+            turnTimeout.cancel();
+        }
+    }
+
+    private void touchTurnTimeout() {
+        if (turnTimeout != null) {
+            turnTimeout.touch();
+        }
+    }
+
+    /**
+     * Ends a match in which no move has been played for the turn timeout. The
+     * player to move forfeits, and the other player wins. A session that never
+     * had two players has no winner, and takes no new player.
+     *
+     * @return {@code true} if the match has been ended, {@code false} if it was
+     *         already over.
+     */
+    synchronized boolean forfeit() {
+        if (over) {
+            return false;
+        }
+        over = true;
+        winner = joinedPlayers == 2 ? currentTargetId : 0;
+        if (broadcast != null) {
+            broadcast.publish();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the second player is the server's bot.
+     *
+     * @return {@code true} if the match is played against the bot.
+     */
+    public synchronized boolean isAgainstBot() {
+        return bot != null;
+    }
+
+    /**
+     * Checks whether both players have joined this session.
+     *
+     * @return {@code true} if the session is full, {@code false} otherwise.
+     */
+    public synchronized boolean isFull() {
+        return joinedPlayers == 2;
+    }
+
+    /**
+     * Gets the number of players that have joined this session.
+     *
+     * @return The number of players (0 to 2).
+     */
+    public synchronized int getJoinedPlayers() {
+        return joinedPlayers;
+    }
+
+    /**
+     * Restores the players of a match read from the journal.
+     *
+     * @param playerId The ID of a player that had joined.
+     */
+    synchronized void restorePlayers(int playerId) {
+        joinedPlayers = Math.max(joinedPlayers, playerId);
+    }
+
+    /**
+     * Gets the time the session was opened or restored.
+     *
+     * @return The time, as given by {@link System#nanoTime()}.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Gets the unique ID of the match.
+     *
+     * @return The game ID.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the dimension of the game board.
+     *
+     * @return The board dimension.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the model holding the boards of this match. Without the session
+     * lock, only the placement of the ships may be read from it.
+     *
+     * @return The model of this session.
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the ID of the board that is expected to receive the next shot.
+     *
+     * @return The ID of the current target (1 or 2).
+     */
+    public synchronized int getCurrentTargetId() {
+        return currentTargetId;
+    }
+
+    /**
+     * Plays one turn of the match. The shot is only accepted if the match is
+     * still running and it is aimed at the current target. In a match against
+     * the bot, the bot's shot is played too, and the outcome carries it as the
+     * opponent's previous shot.
+     *
+     * @param targetId The ID of the targeted board (1 or 2).
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @return The outcome of the shot in a new turn, or {@link Turn#INVALID}
+     *         if the shot was rejected.
+     */
+    public Turn playTurn(int targetId, int row, int col) {
+        return playTurn(targetId, row, col, new Turn());
+    }
+
+    /**
+     * Plays one turn of the match, filling its outcome into a turn of the
+     * shooter's, as {@link #playTurn(int, int, int)} does.
+     *
+     * @param targetId The ID of the targeted board (1 or 2).
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @param turn     The turn the outcome is filled into, which the caller
+     *                 does not read while this runs.
+     * @return The filled turn, or {@link Turn#INVALID} if the shot was
+     *         rejected.
+     */
+    public synchronized Turn playTurn(int targetId, int row, int col, Turn turn) {
+        if (over || targetId != currentTargetId) {
+            return Turn.INVALID;
+        }
+        apply(targetId, row, col, turn);
+        recordLastMove();
+        if (bot != null && !over) {
+            playBot(turn);
+        }
+        if (broadcast != null) {
+            broadcast.publish();
+        }
+        return turn;
+    }
+
+    /**
+     * Plays the bot's answer to a shot of the player.
+     *
+     * @param turn The outcome of the player's shot, which is given the bot's
+     *             shot as the opponent's previous shot.
+     */
+    private void playBot(Turn turn) {
+        shootBot();
+        turn.set(true, turn.isHit(), 2, turn.getShipIndex(), turn.getShipHealth(), previousRow, previousCol,
+                previousHit, turn.getTargetHealth(), model.getBoardHealth(1), model.getMoveLog().size(), winner);
+    }
+
+    /**
+     * Fires the bot's shot at the player's board.
+     */
+    private void shootBot() {
+        long start = System.nanoTime();
+        int size = dimension * 2;
+        int cell = bot.next();
+        int result = apply(1, Board.rowOf(cell, size), Board.colOf(cell, size), null);
+        informBot(cell, result);
+        ServerMetrics.get().getBotMove().record(System.nanoTime() - start);
+        recordLastMove();
+    }
+
+    /**
+     * Tells the bot the outcome of one of its shots.
+     *
+     * @param cell   The cell the bot fired at.
+     * @param result The outcome of the shot, packed by {@link ShotResult}.
+     */
+    private void informBot(int cell, int result) {
+        bot.onResult(cell, ShotResult.isHit(result),
+                ShotResult.isSunk(result) ? model.getRandomizedShips(1)[ShotResult.shipIndex(result)] : null);
+    }
+
+    private void recordLastMove() {
+        if (journal != null) {
+            MoveLog moveLog = model.getMoveLog();
+            journal.recordMove(gameId, moveLog.size() - 1, moveLog.get(moveLog.size() - 1));
+        }
+    }
+
+    /**
+     * Replays a move read from the journal. Moves that have already been
+     * replayed are skipped, and the shots of a restored bot are fed to it.
+     *
+     * @param sequence The sequence number of the move.
+     * @param move     The move, packed as by {@link MoveLog}.
+     */
+    synchronized void replay(int sequence, int move) {
+        if (sequence == model.getMoveLog().size() && !over && MoveLog.targetId(move) == currentTargetId) {
+            int targetId = currentTargetId;
+            int row = MoveLog.row(move);
+            int col = MoveLog.col(move);
+            int result = apply(targetId, row, col, null);
+            if (bot != null && targetId == 1) {
+                informBot(Board.toCell(row, col, dimension * 2), result);
+            }
+        }
+    }
+
+    /**
+     * Applies a shot that has been accepted to the model and the turn state.
+     *
+     * @param targetId The ID of the targeted board (1 or 2).
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @param turn     The turn the outcome is filled into, or {@code null}.
+     * @return The outcome of the shot on the board, packed by
+     *         {@link ShotResult}.
+     */
+    private int apply(int targetId, int row, int col, Turn turn) {
+        int playerId = targetId == 2 ? 1 : 2;
+
+        long start = System.nanoTime();
+        int result = model.fire(targetId, row, col);
+        ServerMetrics.get().getReceiveShot().record(System.nanoTime() - start);
+
+        int targetHealth = model.getBoardHealth(targetId);
+        int playerHealth = model.getBoardHealth(playerId);
+
+        int winner = 0;
+        if (model.getFleetStatus(targetId).isDefeated()) {
+            winner = playerId;
+        } else if (model.getFleetStatus(playerId).isDefeated()) {
+            winner = targetId;
+        }
+        over = winner != 0;
+        this.winner = winner;
+        if (turnTimeout != null) {
+            if (over) {
+                turnTimeout.cancel();
+            } else {
+                turnTimeout.touch();
+            }
+        }
+
+        if (turn != null) {
+            turn.set(true, ShotResult.isHit(result), targetId, ShotResult.shipIndex(result),
+                    ShotResult.shipHealth(result), previousRow, previousCol, previousHit, targetHealth, playerHealth,
+                    model.getMoveLog().size(), winner);
+        }
+
+        previousRow = row;
+        previousCol = col;
+        previousHit = ShotResult.isHit(result);
+        currentTargetId = playerId;
+        return result;
+    }
+
+    /**
+     * Gets the broadcast of the moves of this match, starting it for the first
+     * spectator.
+     *
+     * @param executor The executor the broadcast fans out on.
+     * @return The broadcast of this match.
+     */
+    public synchronized Broadcast getBroadcast(Executor executor) {
+        if (broadcast == null) {
+            broadcast = new Broadcast(this, executor);
+        }
+        return broadcast;
+    }
+
+    /**
+     * Builds the recorded game progress up to a given move.
+     *
+     * @param moveCount The number of moves to include.
+     * @return The recorded game progress.
+     */
+    public synchronized String getRecord(int moveCount) {
+        return model.getMoveLog().toRecord(moveCount);
+    }
+
+    /**
+     * Gets the number of moves played so far.
+     *
+     * @return The number of moves in the log.
+     */
+    public synchronized int getMoveCount() {
+        return model.getMoveLog().size();
+    }
+
+    /**
+     * Copies packed moves from the log of the match.
+     *
+     * @param from        The sequence number of the first move to copy.
+     * @param destination The array the moves are copied to.
+     * @return The number of moves copied.
+     */
+    public synchronized int copyMoves(int from, int[] destination) {
+        return model.getMoveLog().copy(from, destination);
+    }
+
+    /**
+     * Checks whether the match has ended.
+     *
+     * @return {@code true} if the match is over, {@code false} otherwise.
+     */
+    public synchronized boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Gets the winner of the match.
+     *
+     * @return The ID of the winning player (1 or 2), or 0 while the match is
+     *         running or if it was abandoned before both players joined.
+     */
+    public synchronized int getWinner() {
+        return winner;
+    }
+}
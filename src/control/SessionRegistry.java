@@ -0,0 +1,209 @@
+package control;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import cluster.ClusterView;
+
+/**
+ * The SessionRegistry class keeps track of every match hosted by the server,
+ * keyed by game ID. New sessions take their boards from a {@link BoardPool},
+ * and the {@link Matchmaker} seats the players in them. When a {@link Journal}
+ * is set, every session created, joined or removed is logged to it.
+ * <p>
+ * Once the server has joined a cluster, new sessions only take the game IDs
+ * that the latest {@link ClusterView} gives to this node.
+ * <p>
+ * Every session, new or restored, gets a turn timeout of
+ * {@code battleship.turn.timeout} milliseconds, 60000 by default, on the
+ * {@link TimerWheel} the registry is given; 0 lets players take as long as
+ * they like.
+ */
+public class SessionRegistry {
+
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGameId = new AtomicInteger(1);
+    private final BoardPool boards;
+    private volatile Journal journal;
+    private volatile ClusterView cluster;
+    private final TimerWheel timers;
+    private final Consumer<Session> turnExpired;
+    private final long turnTimeoutMillis = Long.getLong("battleship.turn.timeout", DEFAULT_TURN_TIMEOUT_MILLIS);
+    private static final long DEFAULT_TURN_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Constructs a SessionRegistry whose sessions have no turn timeout.
+     *
+     * @param boards The pool the boards of new sessions are taken from.
+     */
+    public SessionRegistry(BoardPool boards) {
+        this(boards, null, null);
+    }
+
+    /**
+     * Constructs a SessionRegistry.
+     *
+     * @param boards      The pool the boards of new sessions are taken from.
+     * @param timers      The wheel the turn timeouts run on, or {@code null}
+     *                    for no turn timeout.
+     * @param turnExpired Called on the wheel's thread when no move has been
+     *                    played in a session for the turn timeout.
+     */
+    public SessionRegistry(BoardPool boards, TimerWheel timers, Consumer<Session> turnExpired) {
+        this.boards = boards;
+        this.timers = timers;
+        this.turnExpired = turnExpired;
+    }
+
+    /**
+     * Opens a new session, with no player yet.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The new session.
+     */
+    public Session create(int dimension) {
+        Session session = new Session(nextGameId(), dimension, boards.take(dimension), journal);
+        sessions.put(session.getGameId(), session);
+        if (journal != null) {
+            journal.recordCreate(session);
+        }
+        startTurnTimeout(session);
+        return session;
+    }
+
+    /**
+     * Starts the turn timeout of a session, if there is one.
+     *
+     * @param session The session.
+     */
+    private void startTurnTimeout(Session session) {
+        if (timers != null && turnTimeoutMillis > 0) {
+            session.setTurnTimeout(timers.schedule(turnTimeoutMillis, () -> turnExpired.accept(session)));
+        }
+    }
+
+    /**
+     * Hands out the game ID of a new session. In a cluster the sequence is
+     * skipped forward to the next ID the ring gives to this node, which takes
+     * about as many tries as there are nodes.
+     *
+     * @return The game ID.
+     */
+    private int nextGameId() {
+        ClusterView view = cluster;
+        if (view == null) {
+            return nextGameId.getAndIncrement();
+        }
+        int gameId;
+        do {
+            gameId = view.toGameId(nextGameId.getAndIncrement());
+        } while (!view.owns(gameId) || sessions.containsKey(gameId));
+        return gameId;
+    }
+
+    /**
+     * Logs that a player has taken a seat in a session.
+     *
+     * @param session The session.
+     * @param id      The ID of the player (1 or 2).
+     */
+    void recordJoin(Session session, int id) {
+        if (journal != null) {
+            journal.recordJoin(session.getGameId(), id);
+        }
+    }
+
+    /**
+     * Gets the session with the given game ID.
+     *
+     * @param gameId The ID of the match.
+     * @return The session, or {@code null} if no such match is running.
+     */
+    public Session get(int gameId) {
+        return sessions.get(gameId);
+    }
+
+    /**
+     * Removes a finished session from the registry.
+     *
+     * @param session The session to remove.
+     */
+    public void remove(Session session) {
+        if (sessions.remove(session.getGameId()) != null && journal != null) {
+            journal.recordEnd(session.getGameId());
+        }
+    }
+
+    /**
+     * Adds a session restored from the journal. Its players have a full turn
+     * timeout from now to come back, and a bot whose answer was lost fires
+     * it now.
+     *
+     * @param session The restored session.
+     */
+    void restore(Session session) {
+        sessions.put(session.getGameId(), session);
+        nextGameId.accumulateAndGet(session.getGameId() + 1, Math::max);
+        startTurnTimeout(session);
+        session.resumeBot();
+    }
+
+    /**
+     * Makes sure game IDs handed out before a restart are not used again.
+     *
+     * @param lastGameId The highest game ID found in the journal.
+     */
+    void restoreLastGameId(int lastGameId) {
+        nextGameId.accumulateAndGet(lastGameId + 1, Math::max);
+    }
+
+    /**
+     * Gets the highest game ID handed out so far.
+     *
+     * @return The game ID, or 0 if no match has been created.
+     */
+    public int getLastGameId() {
+        return nextGameId.get() - 1;
+    }
+
+    /**
+     * Sets the journal that new sessions are logged to.
+     *
+     * @param journal The journal.
+     */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the view of the cluster the server belongs to, so that new sessions
+     * take the game IDs it gives to this node. Sessions already running keep
+     * their IDs.
+     *
+     * @param cluster The view of the cluster.
+     */
+    void setCluster(ClusterView cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Gets every session currently hosted.
+     *
+     * @return A live view of the sessions.
+     */
+    public Collection<Session> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Gets the number of sessions currently hosted.
+     *
+     * @return The number of active sessions.
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,145 @@
+package control;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import metrics.ServerMetrics;
+
+/**
+ * The Spectator class is a read-only client following a match through its
+ * {@link Broadcast}. The frames of the broadcast wait in a bounded queue until
+ * the connection of the spectator sends them. When the queue is full the
+ * waiting frames are dropped, and the spectator later resends the missing
+ * moves from the log of the match, so a slow spectator never holds up the
+ * broadcast or the players.
+ */
+public class Spectator {
+
+    /** The number of frames a spectator queues by default. */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private final Broadcast broadcast;
+    private final BlockingQueue<Broadcast.Frame> queue;
+    private final Runnable wakeUp;
+    private int sentMoves;
+
+    /**
+     * Constructs a Spectator of a match.
+     *
+     * @param broadcast The broadcast of the match.
+     * @param queueSize The number of frames queued at most.
+     * @param wakeUp    Called after a frame is queued, or {@code null} if the
+     *                  connection waits in {@link #take()}.
+     */
+    public Spectator(Broadcast broadcast, int queueSize, Runnable wakeUp) {
+        this.broadcast = broadcast;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.wakeUp = wakeUp;
+    }
+
+    /**
+     * Queues a frame, dropping the frames still waiting if the queue is full.
+     *
+     * @param frame The frame to queue.
+     */
+    void offer(Broadcast.Frame frame) {
+        if (!queue.offer(frame)) {
+            queue.clear();
+            queue.offer(frame);
+            ServerMetrics.get().spectatorResynced();
+        }
+        if (wakeUp != null) {
+            wakeUp.run();
+        }
+    }
+
+    /**
+     * Gets the next queued frame without waiting.
+     *
+     * @return The frame, or {@code null} if none is queued.
+     */
+    Broadcast.Frame poll() {
+        return queue.poll();
+    }
+
+    /**
+     * Waits for the next queued frame.
+     *
+     * @return The frame.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    Broadcast.Frame take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /**
+     * Sends the moves played before the spectator subscribed.
+     *
+     * @param writer The connection of the spectator.
+     * @throws IOException If an error occurs during communication.
+     */
+    void catchUp(Writer writer) throws IOException {
+        int moveCount = getSession().getMoveCount();
+        if (sentMoves < moveCount) {
+            writer.sendMoves(sentMoves, moveCount);
+            sentMoves = moveCount;
+        }
+    }
+
+    /**
+     * Sends a frame of the broadcast. Moves the spectator has missed, because
+     * frames were dropped or it subscribed during a fan-out, are encoded again
+     * from the log; moves it already has are skipped.
+     *
+     * @param frame  The frame to send.
+     * @param writer The connection of the spectator.
+     * @throws IOException If an error occurs during communication.
+     */
+    void send(Broadcast.Frame frame, Writer writer) throws IOException {
+        if (sentMoves == frame.getFrom()) {
+            writer.send(frame.getBytes());
+            sentMoves = frame.getTo();
+        } else if (sentMoves < frame.getTo()) {
+            writer.sendMoves(sentMoves, frame.getTo());
+            sentMoves = frame.getTo();
+            if (frame.isEnd()) {
+                writer.send(frame.getBytes());
+            }
+        }
+    }
+
+    /**
+     * Stops following the match.
+     */
+    void cancel() {
+        broadcast.unsubscribe(this);
+    }
+
+    Session getSession() {
+        return broadcast.getSession();
+    }
+
+    /**
+     * The Writer interface is the connection a spectator sends its frames on.
+     */
+    interface Writer {
+
+        /**
+         * Encodes moves from the log of the match and sends them.
+         *
+         * @param from The sequence number of the first move.
+         * @param to   The sequence number to stop at.
+         * @throws IOException If an error occurs during communication.
+         */
+        void sendMoves(int from, int to) throws IOException;
+
+        /**
+         * Sends an encoded frame.
+         *
+         * @param frame The frame, length included.
+         * @throws IOException If an error occurs during communication.
+         */
+        void send(byte[] frame) throws IOException;
+    }
+}
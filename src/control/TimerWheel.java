@@ -0,0 +1,175 @@
+package control;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TimerWheel class times out idle connections and matches without a
+ * scheduled task for each of them. Timeouts are kept in a ring of slots, one
+ * per tick of {@code battleship.timer.tick} milliseconds, 100 by default, and
+ * a single thread empties the slot of every tick.
+ * <p>
+ * Activity only moves the deadline of a timeout forward, in one volatile
+ * write, and never touches the wheel. When the slot of a timeout comes up, the
+ * timeout fires if its deadline has passed, or is put back in the slot of its
+ * new deadline. Deadlines further away than one turn of the wheel are put in
+ * its last slot and looked at again from there. Each timeout thus costs a
+ * constant amount of work per period of inactivity, and a tick only visits the
+ * timeouts that are due in it, however many are running.
+ * <p>
+ * New timeouts reach the wheel through a lock-free queue, and cancelled ones
+ * are dropped when their slot comes up, so only the wheel's thread ever
+ * touches the slots.
+ */
+public class TimerWheel {
+
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int SLOTS = 1024;
+
+    private final long tickNanos;
+    private final Timeout[] slots = new Timeout[SLOTS];
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "timer-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long tick;
+    private long nextTickAt;
+
+    /**
+     * Constructs a TimerWheel ticking at the rate of
+     * {@code battleship.timer.tick}.
+     */
+    public TimerWheel() {
+        this(Long.getLong("battleship.timer.tick", DEFAULT_TICK_MILLIS));
+    }
+
+    /**
+     * Constructs a TimerWheel and starts its thread.
+     *
+     * @param tickMillis The time between two ticks, in milliseconds.
+     */
+    public TimerWheel(long tickMillis) {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        nextTickAt = System.nanoTime() + tickNanos;
+        timer.scheduleAtFixedRate(this::advance, tickMillis, Math.max(1, tickMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a timeout.
+     *
+     * @param timeoutMillis The inactivity after which it fires, in
+     *                      milliseconds, or 0 for a timeout that never fires.
+     * @param action        Called on the wheel's thread when the timeout
+     *                      fires. It must return quickly.
+     * @return The timeout, whose deadline is {@code timeoutMillis} from now.
+     */
+    public Timeout schedule(long timeoutMillis, Runnable action) {
+        Timeout timeout = new Timeout(TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis)), action);
+        if (timeoutMillis > 0) {
+            timeout.touch();
+            added.add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Places the new timeouts, then empties the slots of every tick that has
+     * passed since the last run.
+     */
+    private void advance() {
+        try {
+            long now = System.nanoTime();
+            Timeout timeout;
+            while ((timeout = added.poll()) != null) {
+                insert(timeout);
+            }
+            while (now - nextTickAt >= 0) {
+                int slot = (int) (tick & (SLOTS - 1));
+                Timeout due = slots[slot];
+                slots[slot] = null;
+                tick++;
+                nextTickAt += tickNanos;
+                while (due != null) {
+                    timeout = due;
+                    due = timeout.next;
+                    timeout.next = null;
+                    if (timeout.action == null) {
+                        continue;
+                    }
+                    if (timeout.deadline - now > 0) {
+                        insert(timeout);
+                    } else {
+                        timeout.fire();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // A failed tick must not cancel the next ones
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Puts a timeout in the slot of the first tick at or after its deadline,
+     * or in the last slot of the wheel if the deadline is further away.
+     *
+     * @param timeout The timeout.
+     */
+    private void insert(Timeout timeout) {
+        long ticks = Math.max(0, (timeout.deadline - nextTickAt + tickNanos - 1) / tickNanos);
+        int slot = (int) ((tick + Math.min(ticks, SLOTS - 1)) & (SLOTS - 1));
+        timeout.next = slots[slot];
+        slots[slot] = timeout;
+    }
+
+    /**
+     * A timeout on the wheel, whose deadline moves forward with every
+     * {@link #touch()}.
+     */
+    public static final class Timeout {
+
+        private final long timeoutNanos;
+        private volatile Runnable action;
+        private volatile long deadline;
+        private Timeout next;
+
+        private Timeout(long timeoutNanos, Runnable action) {
+            this.timeoutNanos = timeoutNanos;
+            this.action = action;
+        }
+
+        /**
+         * Records activity, so the timeout fires a full timeout from now.
+         */
+        public void touch() {
+            if (timeoutNanos > 0) {
+                deadline = System.nanoTime() + timeoutNanos;
+            }
+        }
+
+        /**
+         * Stops the timeout. It stays on the wheel until its slot comes up,
+         * but no longer holds on to its action.
+         */
+        public void cancel() {
+            action = null;
+        }
+
+        private void fire() {
+            Runnable fired = action;
+            action = null;
+            if (fired != null) {
+                try {
+                    fired.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package control;
+
+/**
+ * The Turn class holds the outcome of one shot in a match. It is filled while
+ * the session is locked, so it can then be sent to the shooter without
+ * touching the session again.
+ * <p>
+ * A connection keeps one Turn and has each of its shots filled into it, so a
+ * move allocates nothing. Only the session writes a turn, and only while the
+ * shooter's thread waits for it, so the turn is never shared: the connection
+ * is done with it before it reads its next shot. {@link #INVALID} is shared
+ * by every connection, so it is never filled.
+ */
+public class Turn {
+
+    /** The turn that is returned when a shot is out of turn or the match is over. */
+    public static final Turn INVALID = new Turn();
+
+    private boolean valid;
+    private boolean hit;
+    private int targetId;
+    private int shipIndex = -1;
+    private int shipHealth;
+    private int previousRow;
+    private int previousCol;
+    private boolean previousHit;
+    private int targetHealth;
+    private int playerHealth;
+    private int moveCount;
+    private int winner;
+
+    /**
+     * Constructs a Turn that is invalid until a shot is filled into it.
+     */
+    public Turn() {
+    }
+
+    /**
+     * Fills in the outcome of a shot.
+     *
+     * @param valid        Whether the shot was accepted.
+     * @param hit          Whether the shot hit a ship.
+     * @param targetId     The ID of the target board.
+     * @param shipIndex    The index of the ship last hit on the target board,
+     *                     or -1 if none has been hit.
+     * @param shipHealth   The remaining health of that ship.
+     * @param previousRow  The row of the opponent's previous shot, or 0.
+     * @param previousCol  The column of the opponent's previous shot, or 0.
+     * @param previousHit  Whether the opponent's previous shot hit.
+     * @param targetHealth The health percentage of the target board.
+     * @param playerHealth The health percentage of the shooter's board.
+     * @param moveCount    The number of moves in the match after this shot.
+     * @param winner       The ID of the winner, or 0 if the match goes on.
+     * @return This turn.
+     * @throws IllegalStateException If this turn is {@link #INVALID}.
+     */
+    Turn set(boolean valid, boolean hit, int targetId, int shipIndex, int shipHealth, int previousRow,
+            int previousCol, boolean previousHit, int targetHealth, int playerHealth, int moveCount, int winner) {
+        if (this == INVALID) {
+            throw new IllegalStateException("The shared invalid turn cannot be filled");
+        }
+        this.valid = valid;
+        this.hit = hit;
+        this.targetId = targetId;
+        this.shipIndex = shipIndex;
+        this.shipHealth = shipHealth;
+        this.previousRow = previousRow;
+        this.previousCol = previousCol;
+        this.previousHit = previousHit;
+        this.targetHealth = targetHealth;
+        this.playerHealth = playerHealth;
+        this.moveCount = moveCount;
+        this.winner = winner;
+        return this;
+    }
+
+    /**
+     * Tells whether the shot was accepted.
+     *
+     * @return {@code true} if it was the shooter's turn and the match was
+     *         not over.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Tells whether the shot hit a ship.
+     *
+     * @return {@code true} if the shot hit.
+     */
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * Gets the board the shot was fired at.
+     *
+     * @return The ID of the target board (1 or 2).
+     */
+    public int getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * Gets the ship last hit on the target board.
+     *
+     * @return The index of the ship in the target's fleet, or -1 if none has
+     *         been hit.
+     */
+    public int getShipIndex() {
+        return shipIndex;
+    }
+
+    /**
+     * Gets the remaining health of the ship last hit on the target board.
+     *
+     * @return The number of cells of the ship still afloat.
+     */
+    public int getShipHealth() {
+        return shipHealth;
+    }
+
+    /**
+     * Gets the row of the opponent's previous shot.
+     *
+     * @return The row, or 0 if the opponent has not fired yet.
+     */
+    public int getPreviousRow() {
+        return previousRow;
+    }
+
+    /**
+     * Gets the column of the opponent's previous shot.
+     *
+     * @return The column, or 0 if the opponent has not fired yet.
+     */
+    public int getPreviousCol() {
+        return previousCol;
+    }
+
+    /**
+     * Tells whether the opponent's previous shot hit.
+     *
+     * @return {@code true} if the previous shot hit.
+     */
+    public boolean isPreviousHit() {
+        return previousHit;
+    }
+
+    /**
+     * Gets the health of the target board after this shot.
+     *
+     * @return The health percentage of the target board.
+     */
+    public int getTargetHealth() {
+        return targetHealth;
+    }
+
+    /**
+     * Gets the health of the shooter's board.
+     *
+     * @return The health percentage of the shooter's board.
+     */
+    public int getPlayerHealth() {
+        return playerHealth;
+    }
+
+    /**
+     * Gets the number of moves in the match after this shot, which is the
+     * sequence number of the next move.
+     *
+     * @return The number of moves.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets the winner of the match.
+     *
+     * @return The ID of the winning player, or 0 if the match is not over.
+     */
+    public int getWinner() {
+        return winner;
+    }
+}
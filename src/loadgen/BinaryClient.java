@@ -0,0 +1,133 @@
+package loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import control.Protocol;
+
+/**
+ * The BinaryClient class plays a whole match over one connection that
+ * negotiates {@link Protocol#VERSION_WIDE}, or {@link Protocol#VERSION_BINARY}
+ * with older servers. The fleets and the moves the server sends are read and
+ * skipped. The client may ask for a board dimension, and play against the
+ * server's bot instead of another client.
+ */
+public class BinaryClient extends BotClient {
+
+    private final boolean againstBot;
+    private final int requestedDimension;
+    private Socket socket;
+    private DataInputStream dataInputStream;
+    private DataOutputStream dataOutputStream;
+    private int frameLength;
+    private boolean wide;
+
+    /**
+     * Constructs a BinaryClient for a server.
+     *
+     * @param host       The host name of the server.
+     * @param port       The port number of the server.
+     * @param againstBot {@code true} to play against the server's bot.
+     * @param dimension  The board dimension to ask for, or 0 for the server's
+     *                   dimension.
+     */
+    public BinaryClient(String host, int port, boolean againstBot, int dimension) {
+        super(host, port);
+        this.againstBot = againstBot;
+        this.requestedDimension = dimension;
+    }
+
+    @Override
+    public void join() throws IOException {
+        socket = connect();
+        dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        dataOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        dataOutputStream.writeInt(Protocol.hello(Protocol.VERSION_WIDE));
+        dataOutputStream.writeShort(requestedDimension > 0 ? 3 : 1);
+        dataOutputStream.writeByte(againstBot ? Protocol.JOIN_BOT : Protocol.JOIN);
+        if (requestedDimension > 0) {
+            dataOutputStream.writeShort(requestedDimension);
+        }
+        dataOutputStream.flush();
+
+        int hello = dataInputStream.readInt();
+        if (hello != Protocol.hello(Protocol.VERSION_WIDE) && hello != Protocol.hello(Protocol.VERSION_BINARY)) {
+            throw new IOException("The server does not speak the binary protocol");
+        }
+        wide = hello == Protocol.hello(Protocol.VERSION_WIDE);
+        if (readFrame() != Protocol.GAME) {
+            throw new IOException("Expected a GAME frame");
+        }
+        gameId = dataInputStream.readInt();
+        playerId = dataInputStream.readUnsignedByte();
+        if (wide) {
+            dimension = dataInputStream.readUnsignedShort();
+            int shipCount = dataInputStream.readInt() + dataInputStream.readInt();
+            // The fleets are not needed to play
+            while (shipCount > 0) {
+                if (readFrame() != Protocol.FLEET) {
+                    throw new IOException("Expected a FLEET frame");
+                }
+                dataInputStream.skipNBytes(Byte.BYTES + Integer.BYTES);
+                shipCount -= dataInputStream.readUnsignedShort();
+                dataInputStream.skipNBytes(frameLength - 1 - Byte.BYTES - Integer.BYTES - Short.BYTES);
+            }
+        } else {
+            dimension = dataInputStream.readUnsignedByte();
+            dataInputStream.skipNBytes(frameLength - 1 - Integer.BYTES - 2);
+        }
+    }
+
+    @Override
+    public int shoot(int targetId, int row, int col) throws IOException {
+        if (wide) {
+            dataOutputStream.writeShort(6);
+            dataOutputStream.writeByte(Protocol.SHOT);
+            dataOutputStream.writeByte(targetId);
+            dataOutputStream.writeInt((row - 1) * dimension * 2 + col - 1);
+        } else {
+            dataOutputStream.writeShort(4);
+            dataOutputStream.writeByte(Protocol.SHOT);
+            dataOutputStream.writeByte(targetId);
+            dataOutputStream.writeByte(row);
+            dataOutputStream.writeByte(col);
+        }
+        dataOutputStream.flush();
+
+        while (true) {
+            int opcode = readFrame();
+            if (opcode == Protocol.INVALID_SHOT) {
+                return INVALID_SHOT;
+            } else if (opcode == Protocol.HIT || opcode == Protocol.MISSED) {
+                // Ship index, ship health, previous shot and hit
+                dataInputStream.skipNBytes(wide ? 8 : 6);
+                targetHealth = dataInputStream.readUnsignedByte();
+                playerHealth = dataInputStream.readUnsignedByte();
+                return opcode == Protocol.HIT ? HIT : MISSED;
+            }
+            dataInputStream.skipNBytes(frameLength - 1);
+        }
+    }
+
+    /**
+     * Reads the header of the next frame.
+     *
+     * @return The opcode of the frame.
+     * @throws IOException If an error occurs during communication.
+     */
+    private int readFrame() throws IOException {
+        frameLength = dataInputStream.readUnsignedShort();
+        return dataInputStream.readUnsignedByte();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
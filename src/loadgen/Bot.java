@@ -0,0 +1,131 @@
+package loadgen;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.SplittableRandom;
+
+import metrics.LatencyHistogram;
+
+/**
+ * The Bot class is a simulated player. It joins a match, fires at the
+ * opponent's board following its strategy until the match is over, and then
+ * joins the next one, until the load generator stops.
+ * <p>
+ * A shot fired out of turn is answered as invalid, so a bot waiting for its
+ * opponent fires the same cell again after a short pause. The latency of
+ * every shot, valid or not, is recorded. A bot whose shots stay invalid for
+ * ten seconds, which happens when its opponent has left, abandons the match.
+ */
+public class Bot implements Runnable {
+
+    private static final long RECONNECT_MILLIS = 100;
+    private static final long IDLE_NANOS = 10_000_000_000L;
+
+    private final LoadGenerator generator;
+    private final ShotStrategy strategy;
+    private final SplittableRandom random;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Constructs a Bot.
+     *
+     * @param generator The load generator the bot reports to.
+     * @param random    The generator the bot's choices are drawn from.
+     */
+    public Bot(LoadGenerator generator, SplittableRandom random) {
+        this.generator = generator;
+        this.random = random;
+        this.strategy = ShotStrategy.of(generator.getStrategy(), random);
+    }
+
+    @Override
+    public void run() {
+        while (!generator.isStopped()) {
+            try (BotClient client = generator.newClient()) {
+                play(client);
+            } catch (IOException e) {
+                if (!generator.isStopped()) {
+                    generator.recordError();
+                    pause(RECONNECT_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays one match to its end, or until the load generator stops.
+     *
+     * @param client The client the match is played with.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void play(BotClient client) throws IOException {
+        client.join();
+        int gameId = client.getGameId();
+        generator.recordJoin(gameId);
+        int size = client.getDimension() * 2;
+        int targetId = client.getPlayerId() == 1 ? 2 : 1;
+        strategy.reset(size);
+
+        int cell = strategy.next();
+        boolean ready = false;
+        long lastMove = System.nanoTime();
+        while (cell >= 0 && !generator.isStopped()) {
+            if (generator.isFinished(gameId) || System.nanoTime() - lastMove > IDLE_NANOS) {
+                generator.leave(gameId);
+                return;
+            }
+            if (!ready) {
+                pause(generator.thinkTime(random));
+                ready = true;
+            }
+
+            long start = System.nanoTime();
+            int result;
+            try {
+                result = client.shoot(targetId, cell / size + 1, cell % size + 1);
+            } catch (EOFException | SocketException e) {
+                // Persistent connections are closed by the server once the match is over
+                generator.leave(gameId);
+                return;
+            }
+            latency.record(System.nanoTime() - start);
+
+            if (result == BotClient.INVALID_SHOT) {
+                // Not our turn yet
+                generator.recordPoll();
+                pause(generator.getPollMillis());
+                continue;
+            }
+            generator.recordMove();
+            lastMove = System.nanoTime();
+            strategy.onResult(cell, result == BotClient.HIT);
+            // Against the server's bot, the result of a shot also tells when the bot has won
+            if (client.getTargetHealth() == 0 || client.getPlayerHealth() == 0) {
+                generator.finish(gameId);
+                return;
+            }
+            cell = strategy.next();
+            ready = false;
+        }
+    }
+
+    private void pause(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the round-trip times of the bot's shots.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
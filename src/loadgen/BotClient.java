@@ -0,0 +1,144 @@
+package loadgen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * The BotClient class plays one match against the server in one protocol,
+ * the way a real client would. After {@link #join()} it knows the match, and
+ * after each valid {@link #shoot(int, int, int)} it knows the health of both
+ * boards.
+ */
+public abstract class BotClient implements Closeable {
+
+    /** Result of a shot fired out of turn or after the match has ended. */
+    public static final int INVALID_SHOT = 0;
+    /** Result of a shot that hit a ship. */
+    public static final int HIT = 1;
+    /** Result of a shot that missed. */
+    public static final int MISSED = 2;
+
+    protected final String host;
+    protected final int port;
+    protected int dimension;
+    protected int playerId;
+    protected int gameId;
+    protected int targetHealth;
+    protected int playerHealth;
+
+    /**
+     * Constructs a BotClient for a server.
+     *
+     * @param host The host name of the server.
+     * @param port The port number of the server.
+     */
+    protected BotClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Creates a client by protocol name.
+     *
+     * @param protocol {@code request} for a connection per request,
+     *                 {@code serialized} for a persistent connection of object
+     *                 streams, {@code binary} for binary frames, {@code bot}
+     *                 for binary frames against the server's bot.
+     * @param host      The host name of the server.
+     * @param port      The port number of the server.
+     * @param dimension The board dimension asked for by binary clients, or 0
+     *                  for the server's dimension.
+     * @return The client, not yet connected.
+     * @throws IllegalArgumentException If the protocol is unknown.
+     */
+    public static BotClient of(String protocol, String host, int port, int dimension) {
+        switch (protocol) {
+            case "request":
+                return new RequestClient(host, port);
+            case "serialized":
+                return new SerializedClient(host, port);
+            case "binary":
+                return new BinaryClient(host, port, false, dimension);
+            case "bot":
+                return new BinaryClient(host, port, true, dimension);
+            default:
+                throw new IllegalArgumentException("Unknown protocol " + protocol);
+        }
+    }
+
+    /**
+     * Joins a match and reads its handshake.
+     *
+     * @throws IOException If an error occurs during communication.
+     */
+    public abstract void join() throws IOException;
+
+    /**
+     * Fires a shot and reads its outcome.
+     *
+     * @param targetId The ID of the targeted board.
+     * @param row      The row of the shot, from 1.
+     * @param col      The column of the shot, from 1.
+     * @return {@link #HIT}, {@link #MISSED} or {@link #INVALID_SHOT}.
+     * @throws IOException If an error occurs during communication.
+     */
+    public abstract int shoot(int targetId, int row, int col) throws IOException;
+
+    /**
+     * Opens a connection to the server.
+     *
+     * @return The connected socket.
+     * @throws IOException If the server cannot be reached.
+     */
+    protected Socket connect() throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    /**
+     * Gets the dimension of the match the client has joined.
+     *
+     * @return The dimension of the game board.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the seat of the client in its match.
+     *
+     * @return The ID of the player (1 or 2).
+     */
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * Gets the match the client has joined.
+     *
+     * @return The game ID.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the health of the opponent's board after the last shot.
+     *
+     * @return The health percentage of the target board.
+     */
+    public int getTargetHealth() {
+        return targetHealth;
+    }
+
+    /**
+     * Gets the health of the client's board after the last shot.
+     *
+     * @return The health percentage of the client's board.
+     */
+    public int getPlayerHealth() {
+        return playerHealth;
+    }
+}
@@ -0,0 +1,106 @@
+package loadgen;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * The HuntShots class plays like a person: it fires at random cells of one
+ * color of a checkerboard until it hits a ship, then fires around the hits
+ * until it runs out of neighbours. The cells of the other color are only
+ * fired at once the first color is used up.
+ */
+public class HuntShots implements ShotStrategy {
+
+    private final SplittableRandom random;
+    private final BitSet fired = new BitSet();
+    private final Deque<Integer> targets = new ArrayDeque<>();
+    private int[] order = new int[0];
+    private int nextOrder;
+    private int size;
+
+    /**
+     * Constructs a HuntShots strategy.
+     *
+     * @param random The generator the hunting shots are drawn from.
+     */
+    public HuntShots(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public void reset(int size) {
+        this.size = size;
+        if (order.length != size * size) {
+            order = new int[size * size];
+        }
+        int even = 0;
+        int odd = (order.length + 1) / 2;
+        for (int cell = 0; cell < order.length; cell++) {
+            if ((cell / size + cell % size) % 2 == 0) {
+                order[even++] = cell;
+            } else {
+                order[odd++] = cell;
+            }
+        }
+        shuffle(0, even);
+        shuffle(even, order.length);
+
+        nextOrder = 0;
+        fired.clear();
+        targets.clear();
+    }
+
+    @Override
+    public int next() {
+        while (!targets.isEmpty()) {
+            int cell = targets.poll();
+            if (!fired.get(cell)) {
+                return fire(cell);
+            }
+        }
+        while (nextOrder < order.length) {
+            int cell = order[nextOrder++];
+            if (!fired.get(cell)) {
+                return fire(cell);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void onResult(int cell, boolean hit) {
+        if (!hit) {
+            return;
+        }
+        int row = cell / size;
+        int col = cell % size;
+        if (row > 0) {
+            targets.add(cell - size);
+        }
+        if (row < size - 1) {
+            targets.add(cell + size);
+        }
+        if (col > 0) {
+            targets.add(cell - 1);
+        }
+        if (col < size - 1) {
+            targets.add(cell + 1);
+        }
+    }
+
+    private int fire(int cell) {
+        fired.set(cell);
+        return cell;
+    }
+
+    private void shuffle(int from, int to) {
+        for (int i = to - 1; i > from; i--) {
+            int pick = from + random.nextInt(i - from + 1);
+            int cell = order[pick];
+            order[pick] = order[i];
+            order[i] = cell;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import control.ExecutionMode;
+import control.ServerConfig;
+import metrics.LatencyHistogram;
+
+/**
+ * The LoadGenerator class runs a fleet of bots against a server to measure
+ * its capacity. Each bot is a simulated player on a thread of its own, or on a
+ * virtual thread when the runtime supports them. While the bots play, the
+ * moves per second are printed at every interval, and at the end the totals
+ * and the shot round-trip latencies.
+ * <p>
+ * The settings are given as {@code --name=value} arguments:
+ * <ul>
+ * <li>{@code host}, {@code port}: the server, {@code localhost:5000} by
+ * default;</li>
+ * <li>{@code bots}: the number of simulated players, 100 by default;</li>
+ * <li>{@code spectators}: the number of simulated spectators, each watching
+ * the newest match, none by default;</li>
+ * <li>{@code protocol}: {@code request}, {@code serialized} or
+ * {@code binary}, or {@code bot} for binary bots each playing the server's
+ * bot;</li>
+ * <li>{@code dimension}: the board dimension binary bots ask for, the
+ * server's by default;</li>
+ * <li>{@code strategy}: {@code random}, {@code sweep} or {@code hunt};</li>
+ * <li>{@code think}: the pause before each shot in milliseconds, or a range
+ * such as {@code 5-20};</li>
+ * <li>{@code poll}: the pause before firing again out of turn in
+ * milliseconds;</li>
+ * <li>{@code duration}, {@code interval}, {@code ramp}: the length of the run
+ * and of the reporting interval in seconds, and the time over which the bots
+ * are started in milliseconds.</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    private final String host;
+    private final int port;
+    private final int botCount;
+    private final int spectatorCount;
+    private final String protocol;
+    private final int dimension;
+    private final String strategy;
+    private final long thinkMin;
+    private final long thinkMax;
+    private final long pollMillis;
+    private final long durationMillis;
+    private final long intervalMillis;
+    private final long rampMillis;
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder spectatedMoves = new LongAdder();
+    private final LongAdder spectatorGaps = new LongAdder();
+    private final AtomicInteger newestGameId = new AtomicInteger();
+    private final Map<Integer, Integer> endedGames = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a LoadGenerator from its settings.
+     *
+     * @param settings The settings, keyed by name.
+     */
+    public LoadGenerator(Properties settings) {
+        host = settings.getProperty("host", "localhost");
+        port = Integer.parseInt(settings.getProperty("port", "5000"));
+        botCount = Integer.parseInt(settings.getProperty("bots", "100"));
+        spectatorCount = Integer.parseInt(settings.getProperty("spectators", "0"));
+        protocol = settings.getProperty("protocol", "binary");
+        dimension = Integer.parseInt(settings.getProperty("dimension", "0"));
+        strategy = settings.getProperty("strategy", "hunt");
+        String[] think = settings.getProperty("think", "0").split("-");
+        thinkMin = Long.parseLong(think[0]);
+        thinkMax = Long.parseLong(think[think.length - 1]);
+        pollMillis = Long.parseLong(settings.getProperty("poll", "1"));
+        durationMillis = Long.parseLong(settings.getProperty("duration", "30")) * 1000;
+        intervalMillis = Long.parseLong(settings.getProperty("interval", "5")) * 1000;
+        rampMillis = Long.parseLong(settings.getProperty("ramp", "1000"));
+
+        // Fail on a wrong name before any bot starts
+        BotClient.of(protocol, host, port, dimension);
+        ShotStrategy.of(strategy, new SplittableRandom());
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args The settings, each {@code --name=value}.
+     * @throws Exception If the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(ServerConfig.parseArgs(args, "")).run();
+    }
+
+    /**
+     * Starts the bots, reports their progress until the run is over and prints
+     * the totals.
+     *
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public void run() throws InterruptedException {
+        System.out.printf("%d %s bots, %s strategy, against %s:%d for %d s%n", botCount, protocol, strategy, host,
+                port, durationMillis / 1000);
+
+        ExecutorService executor = ExecutionMode.VIRTUAL.newConnectionExecutor();
+        SplittableRandom seeds = new SplittableRandom();
+        List<Bot> bots = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < botCount; i++) {
+            Bot bot = new Bot(this, seeds.split());
+            bots.add(bot);
+            executor.execute(bot);
+            if (rampMillis > 0) {
+                long due = start + TimeUnit.MILLISECONDS.toNanos(rampMillis * (i + 1) / botCount);
+                TimeUnit.NANOSECONDS.sleep(due - System.nanoTime());
+            }
+        }
+        for (int i = 0; i < spectatorCount; i++) {
+            executor.execute(new Watcher(this));
+        }
+
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long lastMoves = 0;
+        long lastReport = start;
+        while (System.nanoTime() < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS.toNanos(intervalMillis), end - System.nanoTime()));
+            long now = System.nanoTime();
+            long totalMoves = moves.sum();
+            System.out.printf("%6.1f s  %10.1f moves/s  %8d matches  %6d errors%n", (now - start) / 1e9,
+                    (totalMoves - lastMoves) * 1e9 / (now - lastReport), matches.sum(), errors.sum());
+            lastMoves = totalMoves;
+            lastReport = now;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        stopped = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        for (Bot bot : bots) {
+            latency.add(bot.getLatency());
+        }
+        System.out.printf("moves %d (%.1f/s), matches %d, out-of-turn shots %d, errors %d%n", moves.sum(),
+                moves.sum() * 1e9 / elapsed, matches.sum(), polls.sum(), errors.sum());
+        if (spectatorCount > 0) {
+            System.out.printf("%d spectators: moves received %d (%.1f/s), gaps %d%n", spectatorCount,
+                    spectatedMoves.sum(), spectatedMoves.sum() * 1e9 / elapsed, spectatorGaps.sum());
+        }
+        System.out.printf("shot latency ms: p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f  (%d shots)%n",
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+                latency.getPercentile(99.9) / 1e6, latency.getMax() / 1e6, latency.getCount());
+    }
+
+    /**
+     * Creates a client for a bot, in the protocol of the run.
+     *
+     * @return The client, not yet connected.
+     */
+    BotClient newClient() {
+        return BotClient.of(protocol, host, port, dimension);
+    }
+
+    /**
+     * Draws the pause a bot takes before a shot.
+     *
+     * @param random The generator of the bot.
+     * @return The pause in milliseconds.
+     */
+    long thinkTime(SplittableRandom random) {
+        return thinkMax > thinkMin ? random.nextLong(thinkMin, thinkMax + 1) : thinkMin;
+    }
+
+    /**
+     * Records that a bot has won a match, so its opponent stops playing.
+     *
+     * @param gameId The ID of the match.
+     */
+    void finish(int gameId) {
+        matches.increment();
+        leave(gameId);
+    }
+
+    /**
+     * Checks whether the opponent of a bot has won the match.
+     *
+     * @param gameId The ID of the match.
+     * @return {@code true} if the match is over.
+     */
+    boolean isFinished(int gameId) {
+        return endedGames.containsKey(gameId);
+    }
+
+    /**
+     * Records that a bot has left a match. The first player to leave marks the
+     * match as ended, and the second one clears the mark.
+     *
+     * @param gameId The ID of the match.
+     */
+    void leave(int gameId) {
+        endedGames.merge(gameId, 1, (left, leaving) -> null);
+    }
+
+    /**
+     * Records that a bot has joined a match, so spectators can watch it.
+     *
+     * @param gameId The ID of the match.
+     */
+    void recordJoin(int gameId) {
+        newestGameId.accumulateAndGet(gameId, Math::max);
+    }
+
+    void recordMove() {
+        moves.increment();
+    }
+
+    void recordPoll() {
+        polls.increment();
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordSpectatedMoves(int count) {
+        spectatedMoves.add(count);
+    }
+
+    void recordSpectatorGap() {
+        spectatorGaps.increment();
+    }
+
+    int getNewestGameId() {
+        return newestGameId.get();
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    String getStrategy() {
+        return strategy;
+    }
+
+    long getPollMillis() {
+        return pollMillis;
+    }
+}
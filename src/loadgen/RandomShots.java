@@ -0,0 +1,50 @@
+package loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * The RandomShots class fires at the cells in a random order, each cell once.
+ */
+public class RandomShots implements ShotStrategy {
+
+    private final SplittableRandom random;
+    private int[] order = new int[0];
+    private int remaining;
+
+    /**
+     * Constructs a RandomShots strategy.
+     *
+     * @param random The generator the order is drawn from.
+     */
+    public RandomShots(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public void reset(int size) {
+        if (order.length != size * size) {
+            order = new int[size * size];
+        }
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        remaining = order.length;
+    }
+
+    @Override
+    public int next() {
+        if (remaining == 0) {
+            return -1;
+        }
+        // One step of a Fisher-Yates shuffle per shot
+        int pick = random.nextInt(remaining);
+        int cell = order[pick];
+        order[pick] = order[--remaining];
+        order[remaining] = cell;
+        return cell;
+    }
+
+    @Override
+    public void onResult(int cell, boolean hit) {
+    }
+}
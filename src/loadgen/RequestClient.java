@@ -0,0 +1,86 @@
+package loadgen;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import control.Control;
+import model.Board;
+
+/**
+ * The RequestClient class speaks the request protocol: a connection that
+ * joins the match and reads the fleets, then a new connection for every shot,
+ * answered with the ship hit, the opponent's previous shot and the whole game
+ * progress. Each connection starts with a request type from {@link Control}.
+ */
+public class RequestClient extends BotClient {
+
+    /**
+     * Constructs a RequestClient for a server.
+     *
+     * @param host The host name of the server.
+     * @param port The port number of the server.
+     */
+    public RequestClient(String host, int port) {
+        super(host, port);
+    }
+
+    @Override
+    public void join() throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
+            dataOutputStream.writeInt(Control.JOIN);
+            dataOutputStream.flush();
+
+            ObjectInputStream objectInputStream = new ObjectInputStream(socket.getInputStream());
+            readObject(objectInputStream);
+            readObject(objectInputStream);
+            DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
+            dimension = dataInputStream.readInt();
+            playerId = dataInputStream.readInt();
+            gameId = dataInputStream.readInt();
+        }
+    }
+
+    @Override
+    public int shoot(int targetId, int row, int col) throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
+            dataOutputStream.writeInt(Control.SHOT);
+            dataOutputStream.writeInt(gameId);
+            dataOutputStream.writeInt(targetId);
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(dataOutputStream);
+            objectOutputStream.writeObject(Board.toCoordinate(row, col));
+            objectOutputStream.flush();
+
+            DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
+            int result = dataInputStream.readInt();
+            if (result != INVALID_SHOT) {
+                ObjectInputStream objectInputStream = new ObjectInputStream(dataInputStream);
+                readObject(objectInputStream);
+                readObject(objectInputStream);
+                dataInputStream.readBoolean();
+                targetHealth = dataInputStream.readInt();
+                playerHealth = dataInputStream.readInt();
+                readObject(objectInputStream);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void close() {
+        // Every request has its own connection
+    }
+
+    static Object readObject(ObjectInputStream objectInputStream) throws IOException {
+        try {
+            return objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package loadgen;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import control.Control;
+import model.Board;
+
+/**
+ * The SerializedClient class plays a whole match over one connection opened
+ * with {@link Control#JOIN_PERSISTENT}, exchanging every message through one
+ * pair of object streams.
+ */
+public class SerializedClient extends BotClient {
+
+    private Socket socket;
+    private ObjectInputStream objectInputStream;
+    private ObjectOutputStream objectOutputStream;
+
+    /**
+     * Constructs a SerializedClient for a server.
+     *
+     * @param host The host name of the server.
+     * @param port The port number of the server.
+     */
+    public SerializedClient(String host, int port) {
+        super(host, port);
+    }
+
+    @Override
+    public void join() throws IOException {
+        socket = connect();
+        DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
+        dataOutputStream.writeInt(Control.JOIN_PERSISTENT);
+        dataOutputStream.flush();
+
+        objectInputStream = new ObjectInputStream(socket.getInputStream());
+        RequestClient.readObject(objectInputStream);
+        RequestClient.readObject(objectInputStream);
+        dimension = objectInputStream.readInt();
+        playerId = objectInputStream.readInt();
+        gameId = objectInputStream.readInt();
+        objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
+    }
+
+    @Override
+    public int shoot(int targetId, int row, int col) throws IOException {
+        objectOutputStream.writeInt(targetId);
+        objectOutputStream.writeObject(Board.toCoordinate(row, col));
+        objectOutputStream.flush();
+
+        int result = objectInputStream.readInt();
+        if (result != INVALID_SHOT) {
+            RequestClient.readObject(objectInputStream);
+            RequestClient.readObject(objectInputStream);
+            objectInputStream.readBoolean();
+            targetHealth = objectInputStream.readInt();
+            playerHealth = objectInputStream.readInt();
+            RequestClient.readObject(objectInputStream);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * The ShotStrategy interface chooses the cells a bot fires at. Cells are
+ * numbered row by row from 0, on a board whose side is twice the dimension.
+ */
+public interface ShotStrategy {
+
+    /**
+     * Starts a new match.
+     *
+     * @param size The side length of the opponent's board.
+     */
+    void reset(int size);
+
+    /**
+     * Chooses the next cell to fire at. A cell is only returned once per match.
+     *
+     * @return The cell, or -1 if every cell has been fired at.
+     */
+    int next();
+
+    /**
+     * Learns the outcome of a shot.
+     *
+     * @param cell The cell that was fired at.
+     * @param hit  Whether the shot hit a ship.
+     */
+    void onResult(int cell, boolean hit);
+
+    /**
+     * Creates a strategy by name.
+     *
+     * @param name   {@code random}, {@code sweep} or {@code hunt}.
+     * @param random The generator the strategy draws from.
+     * @return The strategy.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    static ShotStrategy of(String name, SplittableRandom random) {
+        switch (name) {
+            case "random":
+                return new RandomShots(random);
+            case "sweep":
+                return new SweepShots();
+            case "hunt":
+                return new HuntShots(random);
+            default:
+                throw new IllegalArgumentException("Unknown shot strategy " + name);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package loadgen;
+
+/**
+ * The SweepShots class fires at every cell in order, row by row.
+ */
+public class SweepShots implements ShotStrategy {
+
+    private int cells;
+    private int nextCell;
+
+    @Override
+    public void reset(int size) {
+        cells = size * size;
+        nextCell = 0;
+    }
+
+    @Override
+    public int next() {
+        return nextCell < cells ? nextCell++ : -1;
+    }
+
+    @Override
+    public void onResult(int cell, boolean hit) {
+    }
+}
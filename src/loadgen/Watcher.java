@@ -0,0 +1,107 @@
+package loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import control.Protocol;
+
+/**
+ * The Watcher class is a simulated spectator. It watches the newest match the
+ * bots have joined until the match is over, and then the next one, until the
+ * load generator stops. Every move received is counted, and a move that does
+ * not follow the previous one is counted as a gap.
+ */
+public class Watcher implements Runnable {
+
+    private static final int IDLE_MILLIS = 10_000;
+    private static final long RECONNECT_MILLIS = 100;
+
+    private final LoadGenerator generator;
+
+    /**
+     * Constructs a Watcher.
+     *
+     * @param generator The load generator the watcher reports to.
+     */
+    public Watcher(LoadGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void run() {
+        while (!generator.isStopped()) {
+            int gameId = generator.getNewestGameId();
+            if (gameId == 0) {
+                pause(RECONNECT_MILLIS);
+                continue;
+            }
+            try (Socket socket = new Socket(generator.getHost(), generator.getPort())) {
+                socket.setSoTimeout(IDLE_MILLIS);
+                watch(socket, gameId);
+            } catch (EOFException | SocketTimeoutException e) {
+                // The match was abandoned or the server has closed the connection
+            } catch (IOException e) {
+                if (!generator.isStopped()) {
+                    generator.recordError();
+                    pause(RECONNECT_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Watches one match until it is over.
+     *
+     * @param socket The connection to the server.
+     * @param gameId The ID of the match.
+     * @throws IOException If an error occurs during communication.
+     */
+    private void watch(Socket socket, int gameId) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
+        dataOutputStream.writeInt(Protocol.hello(Protocol.VERSION_BINARY));
+        dataOutputStream.writeShort(5);
+        dataOutputStream.writeByte(Protocol.WATCH);
+        dataOutputStream.writeInt(gameId);
+        dataOutputStream.flush();
+        if (dataInputStream.readInt() != Protocol.hello(Protocol.VERSION_BINARY)) {
+            throw new IOException("The server does not speak the binary protocol");
+        }
+
+        int nextMove = 0;
+        while (!generator.isStopped()) {
+            int length = dataInputStream.readUnsignedShort();
+            int opcode = dataInputStream.readUnsignedByte();
+            if (opcode == Protocol.MATCH_OVER) {
+                return;
+            }
+            if (opcode != Protocol.MOVES) {
+                dataInputStream.skipNBytes(length - 1);
+                continue;
+            }
+            int from = dataInputStream.readInt();
+            int count = dataInputStream.readUnsignedShort();
+            dataInputStream.skipNBytes((long) count * Integer.BYTES);
+            if (from > nextMove) {
+                generator.recordSpectatorGap();
+            }
+            if (from + count > nextMove) {
+                generator.recordSpectatedMoves(from + count - Math.max(from, nextMove));
+                nextMove = from + count;
+            }
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
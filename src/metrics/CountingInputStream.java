@@ -0,0 +1,46 @@
+package metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The CountingInputStream class counts the bytes read from a connection into
+ * the {@link ServerMetrics}.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    /**
+     * Constructs a CountingInputStream.
+     *
+     * @param inputStream The stream of the connection.
+     */
+    public CountingInputStream(InputStream inputStream) {
+        super(inputStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value >= 0) {
+            ServerMetrics.get().bytesRead(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = in.read(buffer, offset, length);
+        if (count > 0) {
+            ServerMetrics.get().bytesRead(count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = in.skip(count);
+        ServerMetrics.get().bytesRead(skipped);
+        return skipped;
+    }
+}
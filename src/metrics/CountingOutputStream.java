@@ -0,0 +1,33 @@
+package metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The CountingOutputStream class counts the bytes written to a connection into
+ * the {@link ServerMetrics}.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Constructs a CountingOutputStream.
+     *
+     * @param outputStream The stream of the connection.
+     */
+    public CountingOutputStream(OutputStream outputStream) {
+        super(outputStream);
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        out.write(value);
+        ServerMetrics.get().bytesWritten(1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        ServerMetrics.get().bytesWritten(length);
+    }
+}
@@ -0,0 +1,45 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The MetricsEndpoint class serves a {@link MetricsRegistry} as plain text at
+ * {@code /metrics}, in the format scraped by Prometheus. It only listens on the
+ * loopback address, so the metrics are not exposed beyond the host.
+ */
+public class MetricsEndpoint {
+
+    /** The prefix of every metric name. */
+    public static final String PREFIX = "battleship_";
+
+    private MetricsEndpoint() {
+    }
+
+    /**
+     * Starts serving the metrics on the thread of the HTTP server.
+     *
+     * @param registry The metrics to serve.
+     * @param port     The local port to listen on.
+     * @return The started server.
+     * @throws IOException If the port cannot be opened.
+     */
+    public static HttpServer open(MetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = registry.toText(PREFIX).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,119 @@
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The MetricsRegistry class names the metrics of the server so they can be
+ * exposed together. It holds counters, gauges read on demand and latency
+ * histograms. Metrics are registered once at startup; reading them never
+ * blocks the threads that record them.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private final Map<String, String> descriptions = new LinkedHashMap<>();
+    private final Map<String, String> types = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> values = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    /**
+     * Registers a counter that only goes up.
+     *
+     * @param name        The name of the counter.
+     * @param description What the counter counts.
+     * @return The counter.
+     */
+    public synchronized LongAdder counter(String name, String description) {
+        LongAdder counter = new LongAdder();
+        descriptions.put(name, description);
+        types.put(name, "counter");
+        values.put(name, counter::sum);
+        return counter;
+    }
+
+    /**
+     * Registers a gauge, whose value is read when the metrics are exposed.
+     *
+     * @param name        The name of the gauge.
+     * @param description What the gauge measures.
+     * @param value       The function reading the value.
+     */
+    public synchronized void gauge(String name, String description, LongSupplier value) {
+        descriptions.put(name, description);
+        types.put(name, "gauge");
+        values.put(name, value);
+    }
+
+    /**
+     * Registers a latency histogram.
+     *
+     * @param name        The name of the histogram.
+     * @param description What the histogram times.
+     * @return The histogram.
+     */
+    public synchronized LatencyHistogram histogram(String name, String description) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        descriptions.put(name, description);
+        histograms.put(name, histogram);
+        return histogram;
+    }
+
+    /**
+     * Reads every metric as a flat list of values. A histogram is split into
+     * its count, its maximum and its quantiles, in microseconds.
+     *
+     * @return The values keyed by name.
+     */
+    public synchronized Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new LinkedHashMap<>();
+        values.forEach((name, value) -> snapshot.put(name, value.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            snapshot.put(name + "_count", histogram.getCount());
+            snapshot.put(name + "_max_us", histogram.getMax() / 1e3);
+            for (double quantile : QUANTILES) {
+                snapshot.put(name + "_p" + format(quantile * 100).replace(".", "") + "_us",
+                        histogram.getPercentile(quantile * 100) / 1e3);
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Writes every metric in the plain-text format scraped by Prometheus.
+     * Histograms are written as summaries in seconds.
+     *
+     * @param prefix The prefix added to every name.
+     * @return The metrics as text.
+     */
+    public synchronized String toText(String prefix) {
+        StringBuilder text = new StringBuilder();
+        values.forEach((name, value) -> {
+            header(text, prefix + name, descriptions.get(name), types.get(name));
+            text.append(prefix).append(name).append(' ').append(value.getAsLong()).append('\n');
+        });
+        histograms.forEach((name, histogram) -> {
+            String fullName = prefix + name + "_seconds";
+            header(text, fullName, descriptions.get(name), "summary");
+            for (double quantile : QUANTILES) {
+                text.append(fullName).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(format(histogram.getPercentile(quantile * 100) / 1e9)).append('\n');
+            }
+            text.append(fullName).append("_sum ").append(format(histogram.getSum() / 1e9)).append('\n');
+            text.append(fullName).append("_count ").append(histogram.getCount()).append('\n');
+        });
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String description, String type) {
+        text.append("# HELP ").append(name).append(' ').append(description).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == (long) value ? Long.toString((long) value) : Double.toString(value);
+    }
+}
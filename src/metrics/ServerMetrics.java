@@ -0,0 +1,326 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The ServerMetrics class holds the metrics recorded by the server while it
+ * runs: how long connections wait to be served, how long shots take to be
+ * decoded, played and answered, how long the journal takes to commit, and
+ * counters for connections, shots, spectators and bytes on the wire.
+ * <p>
+ * Recording only increments striped counters and lock-free histograms, so it
+ * stays on in production. The metrics are exposed through JMX and, when
+ * {@code battleship.metrics.port} is set, as plain text on a local port.
+ */
+public class ServerMetrics {
+
+    /** The name of the MBean the metrics are exposed as. */
+    public static final String OBJECT_NAME = "battleship:type=ServerMetrics";
+
+    private static final ServerMetrics INSTANCE = new ServerMetrics();
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final LongAdder connectionsOpened = registry.counter("connections_total",
+            "Connections accepted since the server started.");
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder shots = registry.counter("shots_total", "Shots received, valid or not.");
+    private final LongAdder invalidShots = registry.counter("invalid_shots_total",
+            "Shots rejected as out of turn or for an unknown match.");
+    private final LongAdder bytesIn = registry.counter("bytes_in_total", "Bytes read from clients.");
+    private final LongAdder bytesOut = registry.counter("bytes_out_total", "Bytes written to clients.");
+    private final LongAdder journalBytes = registry.counter("journal_bytes_total",
+            "Bytes appended to the journal.");
+    private final LongAdder spectators = new LongAdder();
+    private final LongAdder spectatorResyncs = registry.counter("spectator_resyncs_total",
+            "Times a spectator fell behind and its queued frames were dropped.");
+    private final LatencyHistogram acceptWait = registry.histogram("accept_wait",
+            "Time from accepting a connection until it is served.");
+    private final LatencyHistogram shotDecode = registry.histogram("shot_decode",
+            "Time to decode a shot once it has started to arrive.");
+    private final LatencyHistogram receiveShot = registry.histogram("receive_shot",
+            "Time the model takes to apply a shot.");
+    private final LatencyHistogram responseWrite = registry.histogram("response_write",
+            "Time to encode and flush the answer to a shot.");
+    private final LatencyHistogram journalCommit = registry.histogram("journal_commit",
+            "Time to write and force one batch of journal records.");
+    private final LatencyHistogram journalSnapshot = registry.histogram("journal_snapshot",
+            "Time to write a snapshot of the open matches.");
+    private final LatencyHistogram botMove = registry.histogram("bot_move",
+            "Time the server's bot takes to choose and play a shot.");
+    private final LatencyHistogram matchWait = registry.histogram("match_wait",
+            "Time a player waits in the matchmaking queue for an opponent.");
+    private final LongAdder botFallbacks = registry.counter("bot_fallbacks_total",
+            "Players given the server's bot after waiting too long for an opponent.");
+    private final LongAdder idleEvictions = registry.counter("idle_evictions_total",
+            "Player connections closed after sending nothing for the idle timeout.");
+    private final LongAdder slowEvictions = registry.counter("slow_client_evictions_total",
+            "Connections closed because the client did not read its answers.");
+    private final LongAdder forfeits = registry.counter("forfeits_total",
+            "Matches ended because no move was played for the turn timeout.");
+    private volatile LongSupplier playersWaiting = () -> 0;
+    private volatile LongSupplier matchesInProgress = () -> 0;
+    private boolean registered;
+
+    private ServerMetrics() {
+        registry.gauge("active_connections", "Connections currently open.", activeConnections::sum);
+        registry.gauge("spectators", "Spectators currently watching a match.", spectators::sum);
+        registry.gauge("matches_in_progress", "Matches started and not yet over.",
+                () -> matchesInProgress.getAsLong());
+        registry.gauge("players_waiting", "Players waiting in the matchmaking queue for an opponent.",
+                () -> playersWaiting.getAsLong());
+    }
+
+    /**
+     * Gets the metrics of the server.
+     *
+     * @return The single instance.
+     */
+    public static ServerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Exposes the metrics through JMX, and on a local port if
+     * {@code battleship.metrics.port} is set. Exposing them again does
+     * nothing.
+     *
+     * @throws IOException If the metrics port cannot be opened.
+     */
+    public synchronized void expose() throws IOException {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(registry), name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+
+        Integer port = Integer.getInteger("battleship.metrics.port");
+        if (port != null) {
+            MetricsEndpoint.open(registry, port);
+        }
+    }
+
+    /**
+     * Sets where the number of matches in progress is read from.
+     *
+     * @param matches The function counting the matches.
+     */
+    public void setMatchesInProgress(LongSupplier matches) {
+        this.matchesInProgress = matches;
+    }
+
+    /**
+     * Sets where the number of players waiting for an opponent is read from.
+     *
+     * @param players The function counting the players.
+     */
+    public void setPlayersWaiting(LongSupplier players) {
+        this.playersWaiting = players;
+    }
+
+    /**
+     * Counts a connection that has been accepted and is now open.
+     */
+    public void connectionOpened() {
+        connectionsOpened.increment();
+        activeConnections.increment();
+    }
+
+    /**
+     * Counts a connection that has been closed.
+     */
+    public void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    /**
+     * Counts a shot that has been played.
+     *
+     * @param valid {@code true} if the shot was accepted.
+     */
+    public void shotPlayed(boolean valid) {
+        shots.increment();
+        if (!valid) {
+            invalidShots.increment();
+        }
+    }
+
+    /**
+     * Counts a spectator that has started watching a match.
+     */
+    public void spectatorJoined() {
+        spectators.increment();
+    }
+
+    /**
+     * Counts a spectator that has stopped watching its match.
+     */
+    public void spectatorLeft() {
+        spectators.decrement();
+    }
+
+    /**
+     * Counts a spectator whose queued frames were dropped to catch up.
+     */
+    public void spectatorResynced() {
+        spectatorResyncs.increment();
+    }
+
+    /**
+     * Counts bytes read from a client.
+     *
+     * @param count The number of bytes.
+     */
+    public void bytesRead(long count) {
+        bytesIn.add(count);
+    }
+
+    /**
+     * Counts bytes written to a client.
+     *
+     * @param count The number of bytes.
+     */
+    public void bytesWritten(long count) {
+        bytesOut.add(count);
+    }
+
+    /**
+     * Counts bytes appended to the journal.
+     *
+     * @param count The number of bytes.
+     */
+    public void journalWritten(long count) {
+        journalBytes.add(count);
+    }
+
+    /**
+     * Gets the time from accepting a connection until it is served.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getAcceptWait() {
+        return acceptWait;
+    }
+
+    /**
+     * Gets the time to decode a shot once it has started to arrive.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getShotDecode() {
+        return shotDecode;
+    }
+
+    /**
+     * Gets the time the model takes to apply a shot.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getReceiveShot() {
+        return receiveShot;
+    }
+
+    /**
+     * Gets the time to encode and flush the answer to a shot.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getResponseWrite() {
+        return responseWrite;
+    }
+
+    /**
+     * Gets the time to write and force one batch of journal records.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getJournalCommit() {
+        return journalCommit;
+    }
+
+    /**
+     * Gets the time to write a snapshot of the open matches.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getJournalSnapshot() {
+        return journalSnapshot;
+    }
+
+    /**
+     * Gets the time the server's bot takes to choose and play a shot.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getBotMove() {
+        return botMove;
+    }
+
+    /**
+     * Gets the time a player waits for an opponent.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getMatchWait() {
+        return matchWait;
+    }
+
+    /**
+     * Gets the count of players given the bot after waiting too long.
+     *
+     * @return The counter.
+     */
+    public LongAdder getBotFallbacks() {
+        return botFallbacks;
+    }
+
+    /**
+     * Gets the count of player connections closed for being idle.
+     *
+     * @return The counter.
+     */
+    public LongAdder getIdleEvictions() {
+        return idleEvictions;
+    }
+
+    /**
+     * Gets the count of connections closed for not reading their answers.
+     *
+     * @return The counter.
+     */
+    public LongAdder getSlowEvictions() {
+        return slowEvictions;
+    }
+
+    /**
+     * Gets the count of matches forfeited on the turn timeout.
+     *
+     * @return The counter.
+     */
+    public LongAdder getForfeits() {
+        return forfeits;
+    }
+
+    /**
+     * Gets the registry every metric is exposed through.
+     *
+     * @return The registry.
+     */
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -1,29 +1,10 @@
 package miscellaneous;
 
-import java.awt.Color;
-
 public class Misc {
         public static final char[] ALPHABET = { '|', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
                         'N',
                         'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z' };
 
-        public static final Color[] LEFT_BOARD_COLOR = { new Color(203, 253, 200), new Color(154, 253, 212) };
-        public static final Color LEFT_BOARDFRAME_COLOR = new Color(39, 254, 205);
-
-        public static final Color[] RIGHT_BOARD_COLOR = { new Color(244, 209, 39), new Color(242, 194, 164) };
-        public static final Color RIGHT_BOARDFRAME_COLOR = new Color(252, 153, 27);
-
-        public static final Color MISSED_COLOR = new Color(120, 193, 243);
-        public static final Color HIT_COLOR = new Color(239, 98, 98);
-        public static final Color DESTROYED_COLOR = new Color(0, 28, 48);
-        public static final Color UNSELECTED_COLOR = new Color(170, 183, 181);
-        
-
-        public static final Color SHIP_COLOR = new Color(0, 51, 102);
-
-        public static final Color HOVER_COLOR = new Color(47, 160, 138);
-        public static final Color OVER_RANGED_COLOR = new Color(140, 26, 35);
-        public static final Color WHITE = Color.WHITE;
         public static final int WIDTH = 600;
         public static final int HEIGHT = 600;
         public static final String[] LANGUAGE = { "English", "French", "Portuguese" };
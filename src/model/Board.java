@@ -0,0 +1,282 @@
+package model;
+
+/**
+ * The Board class holds the state of one player's board in primitive arrays.
+ * Every cell maps to the index of the ship covering it, so a shot is resolved
+ * with a single array lookup. Ship health is kept per ship index, cells that
+ * have already been shot are tracked in a bitset, and the board keeps the
+ * {@link FleetStatus} of its ships up to date as they are hit.
+ *
+ * Rows and columns start at 1, as in the coordinates sent to the clients. A
+ * cell is also known by its index, counted row by row from 0, which is how it
+ * is sent in protocol version 3. The letter notation, such as "B3" or "AA30",
+ * is only used to display a cell.
+ */
+public class Board {
+
+    /** The value returned by {@link #receiveShot} when no ship is hit. */
+    public static final int MISSED = -1;
+
+    private final int size;
+    private final short[] cellShips;
+    private final long[] shotCells;
+    private final byte[] shipHealth;
+    private final FleetStatus fleetStatus;
+    private int lastHitShip = MISSED;
+
+    /**
+     * Constructs a Board from ships that have been placed.
+     *
+     * @param dimension The dimension of the game board.
+     * @param ships     The placed ships of the board.
+     */
+    public Board(int dimension, Ship[] ships) {
+        this.size = dimension * 2;
+        this.cellShips = new short[size * size];
+        this.shotCells = new long[(size * size + 63) >>> 6];
+        this.shipHealth = new byte[ships.length];
+        this.fleetStatus = new FleetStatus(ships);
+
+        for (int i = 0; i < ships.length; i++) {
+            Ship ship = ships[i];
+            shipHealth[i] = (byte) ship.getLength();
+            for (int j = 0; j < ship.getLength(); j++) {
+                int row = ship.isHorizontal() ? ship.getRow() : ship.getRow() + j;
+                int col = ship.isHorizontal() ? ship.getCol() + j : ship.getCol();
+                // Stored shifted by one so that 0 stands for water
+                cellShips[cell(row, col)] = (short) (i + 1);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the cell, or -1 if it is outside the board.
+     */
+    public int cell(int row, int col) {
+        return toCell(row, col, size);
+    }
+
+    /**
+     * Gets the index of a cell on a board of a given size.
+     *
+     * @param row  The row of the cell.
+     * @param col  The column of the cell.
+     * @param size The side length of the board.
+     * @return The index of the cell, or -1 if it is outside the board.
+     */
+    public static int toCell(int row, int col, int size) {
+        if (row < 1 || row > size || col < 1 || col > size) {
+            return -1;
+        }
+        return (row - 1) * size + (col - 1);
+    }
+
+    /**
+     * Gets the row of a cell index.
+     *
+     * @param cell The index of the cell.
+     * @param size The side length of the board.
+     * @return The row, or 0 if the index is outside the board.
+     */
+    public static int rowOf(int cell, int size) {
+        return cell < 0 || cell >= size * size ? 0 : cell / size + 1;
+    }
+
+    /**
+     * Gets the column of a cell index.
+     *
+     * @param cell The index of the cell.
+     * @param size The side length of the board.
+     * @return The column, or 0 if the index is outside the board.
+     */
+    public static int colOf(int cell, int size) {
+        return cell < 0 || cell >= size * size ? 0 : cell % size + 1;
+    }
+
+    /**
+     * Gets the ship covering a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the ship, or {@link #MISSED} if the cell is water or
+     *         outside the board.
+     */
+    public int shipAt(int row, int col) {
+        int cell = cell(row, col);
+        return cell < 0 ? MISSED : cellShips[cell] - 1;
+    }
+
+    /**
+     * Receives a shot on a cell. A ship only loses health the first time one of
+     * its cells is hit.
+     *
+     * @param row The row of the shot.
+     * @param col The column of the shot.
+     * @return The index of the ship that was hit, or {@link #MISSED}.
+     */
+    public int receiveShot(int row, int col) {
+        int cell = cell(row, col);
+        if (cell < 0) {
+            return MISSED;
+        }
+        int ship = cellShips[cell] - 1;
+        if (ship == MISSED) {
+            return MISSED;
+        }
+
+        long bit = 1L << cell;
+        if ((shotCells[cell >>> 6] & bit) == 0) {
+            shotCells[cell >>> 6] |= bit;
+            shipHealth[ship]--;
+            fleetStatus.hit(ship, shipHealth[ship]);
+        }
+        lastHitShip = ship;
+        return ship;
+    }
+
+    /**
+     * Gets the ship hit by the last shot that hit this board.
+     *
+     * @return The index of the ship, or {@link #MISSED} if no ship has been
+     *         hit.
+     */
+    public int getLastHitShip() {
+        return lastHitShip;
+    }
+
+    /**
+     * Gets the remaining health of a ship.
+     *
+     * @param ship The index of the ship.
+     * @return The number of cells of the ship that have not been hit.
+     */
+    public int getHealth(int ship) {
+        return shipHealth[ship];
+    }
+
+    /**
+     * Checks whether a ship is destroyed.
+     *
+     * @param ship The index of the ship.
+     * @return {@code true} if every cell of the ship has been hit.
+     */
+    public boolean isDestroyed(int ship) {
+        return shipHealth[ship] == 0;
+    }
+
+    /**
+     * Gets the status of the fleet of this board.
+     *
+     * @return The fleet status, updated on every hit.
+     */
+    public FleetStatus getFleetStatus() {
+        return fleetStatus;
+    }
+
+    /**
+     * Gets the number of rows and columns of the board.
+     *
+     * @return The side length of the board.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Builds the display form of a coordinate, such as "B3". Columns after Z
+     * are named like spreadsheet columns: AA, AB, and so on.
+     *
+     * @param row The row, starting at 1.
+     * @param col The column, starting at 1.
+     * @return The coordinate, or {@code null} if the row or column is 0.
+     */
+    public static String toCoordinate(int row, int col) {
+        if (row <= 0 || col <= 0) {
+            return null;
+        }
+        StringBuilder coordinate = new StringBuilder(8);
+        appendCoordinate(coordinate, row, col);
+        return coordinate.toString();
+    }
+
+    /**
+     * Appends the display form of a coordinate, as built by
+     * {@link #toCoordinate(int, int)}, without building a string of its own.
+     * A coordinate off the board is appended as "null", as concatenating the
+     * result of {@link #toCoordinate(int, int)} would.
+     *
+     * @param builder The builder the coordinate is appended to.
+     * @param row     The row, starting at 1.
+     * @param col     The column, starting at 1.
+     */
+    public static void appendCoordinate(StringBuilder builder, int row, int col) {
+        if (row <= 0 || col <= 0) {
+            builder.append((String) null);
+            return;
+        }
+        int start = builder.length();
+        for (int rest = col; rest > 0; rest = (rest - 1) / 26) {
+            builder.insert(start, (char) ('A' + (rest - 1) % 26));
+        }
+        builder.append(row);
+    }
+
+    /**
+     * Gets the row of a coordinate such as "B3".
+     *
+     * @param coordinate The coordinate, or {@code null}.
+     * @return The row, or 0 if the coordinate cannot be read.
+     */
+    public static int parseRow(String coordinate) {
+        int letters = countLetters(coordinate);
+        if (letters == 0) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(coordinate, letters, coordinate.length(), 10));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the column of a coordinate such as "B3".
+     *
+     * @param coordinate The coordinate, or {@code null}.
+     * @return The column, or 0 if the coordinate cannot be read.
+     */
+    public static int parseCol(String coordinate) {
+        int letters = countLetters(coordinate);
+        // Seven letters reach beyond any board and still fit in an int
+        if (letters == 0 || letters > 6) {
+            return 0;
+        }
+        int col = 0;
+        for (int i = 0; i < letters; i++) {
+            col = col * 26 + coordinate.charAt(i) - 'A' + 1;
+        }
+        return col;
+    }
+
+    /**
+     * Counts the column letters at the start of a coordinate.
+     *
+     * @param coordinate The coordinate, or {@code null}.
+     * @return The number of letters from A to Z the coordinate starts with.
+     */
+    private static int countLetters(String coordinate) {
+        if (coordinate == null) {
+            return 0;
+        }
+        int letters = 0;
+        while (letters < coordinate.length() && coordinate.charAt(letters) >= 'A'
+                && coordinate.charAt(letters) <= 'Z') {
+            letters++;
+        }
+        return letters;
+    }
+}
@@ -0,0 +1,358 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * The DensityTargeter class chooses the shots of a computer player. Each cell
+ * is scored by the number of ways the ships still afloat could lie over it,
+ * and the highest score is fired at:
+ * <ul>
+ * <li>while no ship is wounded, placements may only cover cells that have not
+ * been fired at (hunting);</li>
+ * <li>once a ship is hit, only the placements through the hits of wounded
+ * ships are counted, weighted by the number of hits they cover, so the shots
+ * follow the line of the ship (targeting).</li>
+ * </ul>
+ * A sunk ship reveals its position, so its cells stop counting as open hits.
+ * Every length still afloat counts once, however many ships share it.
+ * <p>
+ * The hunting scores of each orientation are kept between shots: a shot only
+ * changes those of its row and column, and the whole board is scored again
+ * only when the last ship of a length sinks. On boards of at least
+ * {@code battleship.bot.parallel} cells, 65536 by default, that full scoring
+ * is spread over the common fork-join pool. The targeting scores only touch
+ * the cells around the open hits.
+ * <p>
+ * A targeter keeps its buffers between matches, so one instance should not be
+ * shared between threads.
+ */
+public class DensityTargeter {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte MISS = 1;
+    private static final byte HIT = 2;
+    private static final byte SUNK = 3;
+    private static final int PARALLEL_CELLS = Integer.getInteger("battleship.bot.parallel", 65536);
+
+    private final SplittableRandom random;
+    private int size;
+    private int cells;
+    private byte[] state = new byte[0];
+    private short[] horizontal = new short[0];
+    private short[] vertical = new short[0];
+    private int[] scores = new int[0];
+    private int[] touched = new int[64];
+    private int touchedCount;
+    private int[] openHits = new int[16];
+    private int openHitCount;
+    private final int[] afloat = new int[Model.CLASSIC_MAX_DIMENSION + 1];
+    private int[] lengths = new int[0];
+    private int shotCount;
+
+    /**
+     * Constructs a DensityTargeter drawing ties from the given random
+     * generator.
+     *
+     * @param random The generator used to break ties between cells.
+     */
+    public DensityTargeter(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Starts a new match against a fleet. Only the lengths of the ships are
+     * used, not their positions.
+     *
+     * @param dimension The dimension of the game board.
+     * @param fleet     The ships of the board that is fired at.
+     */
+    public void reset(int dimension, Ship[] fleet) {
+        size = dimension * 2;
+        cells = size * size;
+        if (state.length < cells) {
+            state = new byte[cells];
+            horizontal = new short[cells];
+            vertical = new short[cells];
+            scores = new int[cells];
+        } else {
+            Arrays.fill(state, 0, cells, UNKNOWN);
+            Arrays.fill(scores, 0, cells, 0);
+        }
+        touchedCount = 0;
+        openHitCount = 0;
+        shotCount = 0;
+        Arrays.fill(afloat, 0);
+        for (Ship ship : fleet) {
+            afloat[ship.getLength()]++;
+        }
+        updateLengths();
+        scoreBoard();
+    }
+
+    /**
+     * Chooses the next cell to fire at. A cell is only returned once per match.
+     *
+     * @return The cell, numbered row by row from 0, or -1 if every cell has
+     *         been fired at.
+     */
+    public int next() {
+        if (shotCount == cells) {
+            return -1;
+        }
+        if (openHitCount > 0) {
+            int cell = target();
+            if (cell >= 0) {
+                return cell;
+            }
+        }
+        return hunt();
+    }
+
+    /**
+     * Learns the outcome of a shot.
+     *
+     * @param cell The cell that was fired at.
+     * @param hit  Whether the shot hit a ship.
+     * @param sunk The ship that the shot has sunk, with its coordinates set, or
+     *             {@code null} if no ship was sunk.
+     */
+    public void onResult(int cell, boolean hit, Ship sunk) {
+        if (state[cell] != UNKNOWN) {
+            return;
+        }
+        shotCount++;
+        state[cell] = hit ? HIT : MISS;
+        scoreRow(cell / size);
+        scoreColumn(cell % size);
+        if (hit) {
+            addOpenHit(cell);
+        }
+        if (sunk != null) {
+            sink(sunk);
+        }
+    }
+
+    /**
+     * Marks the cells of a sunk ship, and scores the board again if it was the
+     * last ship of its length.
+     *
+     * @param ship The sunk ship.
+     */
+    private void sink(Ship ship) {
+        int first = Board.toCell(ship.getRow(), ship.getCol(), size);
+        int step = ship.isHorizontal() ? 1 : size;
+        for (int i = 0; i < ship.getLength(); i++) {
+            int cell = first + i * step;
+            state[cell] = SUNK;
+            removeOpenHit(cell);
+        }
+        if (--afloat[ship.getLength()] == 0) {
+            updateLengths();
+            scoreBoard();
+        }
+    }
+
+    private void updateLengths() {
+        int count = 0;
+        for (int length = 1; length < afloat.length; length++) {
+            if (afloat[length] > 0) {
+                count++;
+            }
+        }
+        lengths = new int[count];
+        for (int length = 1, i = 0; length < afloat.length; length++) {
+            if (afloat[length] > 0) {
+                lengths[i++] = length;
+            }
+        }
+    }
+
+    private void addOpenHit(int cell) {
+        if (openHitCount == openHits.length) {
+            openHits = Arrays.copyOf(openHits, openHitCount * 2);
+        }
+        openHits[openHitCount++] = cell;
+    }
+
+    private void removeOpenHit(int cell) {
+        for (int i = 0; i < openHitCount; i++) {
+            if (openHits[i] == cell) {
+                openHits[i] = openHits[--openHitCount];
+                return;
+            }
+        }
+    }
+
+    // ==================== HUNTING ====================
+
+    /**
+     * Fires at the cell covered by the most placements, drawing among ties.
+     *
+     * @return The cell.
+     */
+    private int hunt() {
+        int best = -1;
+        int bestScore = -1;
+        int ties = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (state[cell] != UNKNOWN) {
+                continue;
+            }
+            int score = horizontal[cell] + vertical[cell];
+            if (score > bestScore) {
+                best = cell;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scores every row and column of the board.
+     */
+    private void scoreBoard() {
+        if (cells >= PARALLEL_CELLS) {
+            IntStream.range(0, size).parallel().forEach(line -> {
+                scoreRow(line);
+                scoreColumn(line);
+            });
+        } else {
+            for (int line = 0; line < size; line++) {
+                scoreRow(line);
+                scoreColumn(line);
+            }
+        }
+    }
+
+    private void scoreRow(int row) {
+        scoreLine(horizontal, row * size, 1);
+    }
+
+    private void scoreColumn(int col) {
+        scoreLine(vertical, col, size);
+    }
+
+    /**
+     * Counts, for every cell of a line, the placements of the lengths afloat
+     * that cover it and only cells that have not been fired at. A run of
+     * {@code r} free cells holds {@code r - length + 1} placements of a
+     * length, and the cell at position {@code i} of the run is covered by
+     * those starting between {@code i - length + 1} and {@code i}.
+     *
+     * @param scores The scores of the orientation of the line.
+     * @param first  The first cell of the line.
+     * @param step   The distance between two cells of the line.
+     */
+    private void scoreLine(short[] scores, int first, int step) {
+        int run = 0;
+        for (int i = 0; i <= size; i++) {
+            int cell = first + i * step;
+            if (i < size && state[cell] == UNKNOWN) {
+                run++;
+                continue;
+            }
+            if (i < size) {
+                scores[cell] = 0;
+            }
+            int start = i - run;
+            for (int j = 0; j < run; j++) {
+                int score = 0;
+                for (int length : lengths) {
+                    if (length > run) {
+                        break;
+                    }
+                    score += Math.min(j, run - length) - Math.max(0, j - length + 1) + 1;
+                }
+                scores[first + (start + j) * step] = (short) score;
+            }
+            run = 0;
+        }
+    }
+
+    // ==================== TARGETING ====================
+
+    /**
+     * Fires next to the open hits, at the cell covered by the most placements
+     * through them.
+     *
+     * @return The cell, or -1 if no placement goes through the open hits.
+     */
+    private int target() {
+        for (int i = 0; i < openHitCount; i++) {
+            int hit = openHits[i];
+            int row = hit / size;
+            int col = hit % size;
+            for (int length : lengths) {
+                for (int offset = 0; offset < length; offset++) {
+                    scorePlacement(row, col - offset, 1, length);
+                    scorePlacement(row - offset, col, size, length);
+                }
+            }
+        }
+
+        int best = -1;
+        int bestScore = 0;
+        int ties = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int cell = touched[i];
+            int score = scores[cell];
+            scores[cell] = 0;
+            if (score > bestScore) {
+                best = cell;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        touchedCount = 0;
+        return best;
+    }
+
+    /**
+     * Adds a placement to the scores of its free cells, if it stays on the
+     * board and only covers free cells and open hits. It is weighted by the
+     * number of open hits it covers.
+     *
+     * @param row    The row of the first cell.
+     * @param col    The column of the first cell.
+     * @param step   1 for a horizontal placement, the side length for a
+     *               vertical one.
+     * @param length The length of the placement.
+     */
+    private void scorePlacement(int row, int col, int step, int length) {
+        if (row < 0 || col < 0) {
+            return;
+        }
+        if (step == 1 ? col + length > size : row + length > size) {
+            return;
+        }
+        int first = row * size + col;
+        int hits = 0;
+        for (int i = 0; i < length; i++) {
+            byte cellState = state[first + i * step];
+            if (cellState == HIT) {
+                hits++;
+            } else if (cellState != UNKNOWN) {
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            int cell = first + i * step;
+            if (state[cell] == UNKNOWN) {
+                if (scores[cell] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = cell;
+                }
+                scores[cell] += hits;
+            }
+        }
+    }
+}
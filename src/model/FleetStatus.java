@@ -0,0 +1,116 @@
+package model;
+
+/**
+ * The FleetStatus class keeps the state of the fleet of one board up to date
+ * as the board is hit: the cells and ships left, the ships left of every
+ * length, and which ships are destroyed. It only changes when a cell is hit
+ * for the first time, so health and game over checks are plain reads.
+ */
+public class FleetStatus {
+
+    private final byte[] shipLengths;
+    private final int[] shipsLeftByLength = new int[Model.CLASSIC_MAX_DIMENSION + 1];
+    private final long[] destroyedShips;
+    private int cellsLeft;
+    private int shipsLeft;
+
+    /**
+     * Constructs the status of a fleet that has not been hit.
+     *
+     * @param ships The ships of the board.
+     */
+    public FleetStatus(Ship[] ships) {
+        shipLengths = new byte[ships.length];
+        destroyedShips = new long[(ships.length + 63) >>> 6];
+        for (int i = 0; i < ships.length; i++) {
+            int length = ships[i].getLength();
+            shipLengths[i] = (byte) length;
+            shipsLeftByLength[length]++;
+            cellsLeft += length;
+        }
+        shipsLeft = ships.length;
+    }
+
+    /**
+     * Records that a cell of a ship has been hit for the first time.
+     *
+     * @param ship   The index of the ship.
+     * @param health The health of the ship after the hit.
+     */
+    void hit(int ship, int health) {
+        cellsLeft--;
+        if (health == 0) {
+            destroyedShips[ship >>> 6] |= 1L << ship;
+            shipsLeftByLength[shipLengths[ship]]--;
+            shipsLeft--;
+        }
+    }
+
+    /**
+     * Gets the health of the fleet, as the percentage of its ships that are
+     * still afloat, rounded down. It is only 0 once the fleet is defeated, so a
+     * single ship left of a large fleet still counts as 1.
+     *
+     * @return The health, from 0 to 100.
+     */
+    public int getHealth() {
+        return shipsLeft == 0 ? 0 : Math.max(1, shipsLeft * 100 / shipLengths.length);
+    }
+
+    /**
+     * Checks whether every ship of the fleet is destroyed.
+     *
+     * @return {@code true} if no ship is left.
+     */
+    public boolean isDefeated() {
+        return shipsLeft == 0;
+    }
+
+    /**
+     * Gets the number of ships of the fleet.
+     *
+     * @return The number of ships, sunk or afloat.
+     */
+    public int getShipCount() {
+        return shipLengths.length;
+    }
+
+    /**
+     * Gets the number of ships of the fleet still afloat.
+     *
+     * @return The number of ships left.
+     */
+    public int getShipsLeft() {
+        return shipsLeft;
+    }
+
+    /**
+     * Gets the number of ship cells of the board not hit yet.
+     *
+     * @return The number of cells left.
+     */
+    public int getCellsLeft() {
+        return cellsLeft;
+    }
+
+    /**
+     * Gets the number of ships of a length that are still afloat.
+     *
+     * @param length The length of the ships.
+     * @return The number of ships left, 0 for a length the fleet does not
+     *         have.
+     */
+    public int getShipsLeft(int length) {
+        return length < 1 || length >= shipsLeftByLength.length ? 0 : shipsLeftByLength[length];
+    }
+
+    /**
+     * Checks whether a ship is destroyed.
+     *
+     * @param ship The index of the ship.
+     * @return {@code true} if every cell of the ship has been hit.
+     */
+    public boolean isDestroyed(int ship) {
+        return (destroyedShips[ship >>> 6] & 1L << ship) != 0;
+    }
+}
@@ -1,31 +1,54 @@
 package model;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * The Model class represents the game model for a battleship game.
  * It handles ship randomization, game functionality, and tracking of ship
  * status.
+ * <p>
+ * A model is not thread-safe: it is only changed by the owner of its match,
+ * such as a session holding its lock. Each shot returns its outcome as an int
+ * packed by {@link ShotResult} rather than leaving it in fields to be read
+ * back, and the ships keep their placement once it is set, so other threads
+ * may read the fleets at any time.
  */
 public class Model {
 
+    /**
+     * The largest dimension played with the classic fleet of one ship as long as
+     * the dimension, two ships one cell shorter, and so on down to length 1.
+     */
+    public static final int CLASSIC_MAX_DIMENSION = 12;
+    /** The largest dimension a board can have. */
+    public static final int MAX_DIMENSION = 250;
+
+    /**
+     * The placers of the threads that generate boards. A placer keeps scratch
+     * buffers as large as the biggest board it has placed, so they belong to
+     * the thread rather than to every model, which would keep them for the
+     * whole match.
+     */
+    private static final ThreadLocal<ShipPlacer> PLACERS =
+            ThreadLocal.withInitial(() -> new ShipPlacer(new SplittableRandom()));
+
     private int dimension;
-    private int leftShipCount;
     private Ship[] firstShips;
+    private Board firstBoard;
 
-    private int rightShipCount;
     private Ship[] secondShips;
+    private Board secondBoard;
 
-    private int maxShipCount;
-    private Ship currentShip;
-
-    private String record;
+    private MoveLog moveLog = new MoveLog();
+    private ShipPlacer seededPlacer;
 
     /**
      * Randomly positions ships for both players' boards.
      */
     public void randomizeShips() {
-        record = "";
+        int size = dimension * 2;
+        // Sized for every cell of both boards, so a match rarely grows its log
+        moveLog = new MoveLog(2 * size * size);
         randomizeShip(1);
         randomizeShip(2);
     }
@@ -37,61 +60,33 @@ public class Model {
      *                the second player).
      */
     public void randomizeShip(int boardId) {
-        String[][] currentCoordinates = new String[dimension * 2 + 1][dimension * 2 + 1];
-
         generateShips(boardId);
-        Random rand = new Random();
+        Ship[] ships = boardId == 1 ? firstShips : secondShips;
+        (seededPlacer != null ? seededPlacer : PLACERS.get()).place(ships, dimension);
 
-        for (Ship ship : boardId == 1 ? firstShips : secondShips) {
-            boolean placed = false;
-            while (!placed) {
-                int randRow = 1 + rand.nextInt(2 * dimension);
-                int randCol = 1 + rand.nextInt(2 * dimension);
-
-                if (isSuitableForShip(currentCoordinates, ship, randRow, randCol)) {
-                    ship.setCoordinates(randRow, randCol);
-                    setSelectedCoordinate(currentCoordinates, ship);
-                    placed = true;
-                }
-            }
+        if (boardId == 1) {
+            firstBoard = new Board(dimension, ships);
+        } else {
+            secondBoard = new Board(dimension, ships);
         }
-
-        leftShipCount = rightShipCount = maxShipCount = boardId == 1 ? firstShips.length : secondShips.length;
     }
 
     /**
-     * Checks if a given position is suitable for placing a ship of specific length
-     * on a board.
+     * Places ships whose positions are already known on a player's board, as
+     * when a match is restored after a restart.
      *
-     * @param currentCoordinates The current state of occupied coordinates on the
-     *                           board.
-     * @param ship               The ship to be placed.
-     * @param randRow            The row for the potential ship placement.
-     * @param randCol            The column for the potential ship placement.
-     * @return {@code true} if the position is suitable for ship placement,
-     *         {@code false} otherwise.
+     * @param boardId The ID of the player's board (1 for the first player, 2 for
+     *                the second player).
+     * @param ships   The ships, with their coordinates set.
      */
-    public boolean isSuitableForShip(String[][] currentCoordinates, Ship ship, int randRow, int randCol) {
-        if (ship.isHorizontal()) {
-            if (randCol + ship.getLength() > currentCoordinates[randRow].length) {
-                return false; // Range exceeds the board dimensions
-            }
-            for (int i = randCol; i < randCol + ship.getLength(); i++) {
-                if (currentCoordinates[randRow][i] != null) {
-                    return false; // Range contains a coordinate that is already occupied
-                }
-            }
+    public void placeShips(int boardId, Ship[] ships) {
+        if (boardId == 1) {
+            firstShips = ships;
+            firstBoard = new Board(dimension, ships);
         } else {
-            if (randRow + ship.getLength() > currentCoordinates.length) {
-                return false; // Range exceeds the board dimensions
-            }
-            for (int i = randRow; i < randRow + ship.getLength(); i++) {
-                if (currentCoordinates[i][randCol] != null) {
-                    return false; // Range contains a coordinate that is already occupied
-                }
-            }
+            secondShips = ships;
+            secondBoard = new Board(dimension, ships);
         }
-        return true; // Range is suitable for placing a ship of the given length
     }
 
     /**
@@ -101,43 +96,12 @@ public class Model {
      *                the second player).
      */
     public void generateShips(int boardId) {
-        int index = 0;
-        Ship[] currentBoardShips = new Ship[(dimension + 1) * dimension / 2];
+        Ship[] currentBoardShips = newFleet(dimension);
 
         if (boardId == 1)
             firstShips = currentBoardShips;
         else
             secondShips = currentBoardShips;
-
-        Random rand = new Random();
-        for (int i = dimension; i >= 1; i--) {
-            for (int j = 0; j < dimension - i + 1; j++) {
-                currentBoardShips[index++] = new Ship(i, rand.nextBoolean());
-            }
-        }
-    }
-
-    /**
-     * Sets selected coordinates on the board for a given ship.
-     *
-     * @param currentCoordinates The current state of occupied coordinates on the
-     *                           board.
-     * @param ship               The ship for which coordinates are being set.
-     */
-    public void setSelectedCoordinate(String[][] currentCoordinates, Ship ship) {
-        int col = ship.getCol();
-        int row = ship.getRow();
-        int shipLength = ship.getLength();
-
-        if (ship.isHorizontal()) {
-            for (int i = col; i < col + shipLength; i++) {
-                currentCoordinates[row][i] = Integer.toString(shipLength);
-            }
-        } else {
-            for (int i = row; i < row + shipLength; i++) {
-                currentCoordinates[i][col] = Integer.toString(shipLength);
-            }
-        }
     }
 
     /**
@@ -162,71 +126,84 @@ public class Model {
      * @return {@code true} if the shot hits a ship, {@code false} otherwise.
      */
     public boolean receiveShot(int targetId, String coordinate) {
-        boolean hit = false;
-        String playerName = targetId == 2 ? "FIRST PLAYER" : "SECOND PLAYER";
-        for (Ship ship : targetId == 1 ? firstShips : secondShips) {
-            for (String tempCoordinate : ship.getCoordinates()) {
-                if (coordinate.equals(tempCoordinate)) {
-                    hit = true;
-                    ship.decreaseHealth();
-
-                    currentShip = ship;
-
-                    updateShipCount(targetId);
-                    record = String.format("\n %s: %s (HIT) %s \n", playerName, coordinate, record);
-
-                    return hit;
-                }
-            }
-        }
-        // currentShip = null;
+        return receiveShot(targetId, Board.parseRow(coordinate), Board.parseCol(coordinate));
+    }
 
-        record = String.format("\n %s: %s (MISSED) %s \n", playerName, coordinate, record);
+    /**
+     * Receives a shot on the specified player's board and updates ship status
+     * accordingly.
+     *
+     * @param targetId The ID of the player's board receiving the shot.
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @return {@code true} if the shot hits a ship, {@code false} otherwise.
+     */
+    public boolean receiveShot(int targetId, int row, int col) {
+        return shoot(targetId, row, col) != Board.MISSED;
+    }
 
-        return hit;
+    /**
+     * Fires a shot at the specified player's board and describes its outcome.
+     *
+     * @param targetId The ID of the player's board receiving the shot.
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @return The outcome of the shot, including the ship last hit on the
+     *         board, packed by {@link ShotResult}.
+     */
+    public int fire(int targetId, int row, int col) {
+        boolean hit = shoot(targetId, row, col) != Board.MISSED;
+        Board board = targetId == 1 ? firstBoard : secondBoard;
+        int ship = board.getLastHitShip();
+        return ship == Board.MISSED ? ShotResult.MISSED : ShotResult.encode(hit, ship, board.getHealth(ship));
     }
 
     /**
-     * Updates the ship count on the specified player's board after a ship is
-     * destroyed.
+     * Applies a shot to a board and logs it.
      *
-     * @param id The ID of the player's board (1 for the first player, 2 for the
-     *           second player).
+     * @param targetId The ID of the player's board receiving the shot.
+     * @param row      The row at which the shot is fired.
+     * @param col      The column at which the shot is fired.
+     * @return The index of the ship that was hit, or {@link Board#MISSED}.
      */
-    public void updateShipCount(int id) {
-        if (currentShip.isDestroyed()) {
-            if (id == 1) {
-                leftShipCount--;
-            } else {
-                rightShipCount--;
-            }
-        }
+    private int shoot(int targetId, int row, int col) {
+        Board board = targetId == 1 ? firstBoard : secondBoard;
+        int ship = board.receiveShot(row, col);
+        moveLog.append(targetId, row, col, ship != Board.MISSED);
+        return ship;
     }
 
     /**
-     * Calculates and returns the health percentage of the specified player's board.
+     * Gets the health percentage of the specified player's board, which is the
+     * share of its ships still afloat.
      *
      * @param id The ID of the player's board (1 for the first player, 2 for the
      *           second player).
      * @return The health percentage of the player's board.
      */
     public int getBoardHealth(int id) {
-        int nominator = (id == 1 ? leftShipCount : rightShipCount);
-
-        float b = (((float) nominator / maxShipCount)) * 100;
+        return getFleetStatus(id).getHealth();
+    }
 
-        int c = (int) b;
-        return c;
+    /**
+     * Gets the status of the fleet of the specified player's board.
+     *
+     * @param id The ID of the player's board (1 for the first player, 2 for the
+     *           second player).
+     * @return The fleet status, updated on every hit.
+     */
+    public FleetStatus getFleetStatus(int id) {
+        return (id == 1 ? firstBoard : secondBoard).getFleetStatus();
     }
 
     /**
-     * Retrieves the current ship that was hit by the last shot.
+     * Seeds the placement of the ships, so the same seed produces the same
+     * boards. A seeded model keeps a placer of its own, with its buffers.
      *
-     * @return The Ship object representing the ship that was hit, or {@code null}
-     *         if no ship was hit.
+     * @param seed The seed of the random generator.
      */
-    public Ship getCurrentShip() {
-        return currentShip;
+    public void setSeed(long seed) {
+        seededPlacer = new ShipPlacer(new SplittableRandom(seed));
     }
 
     /**
@@ -246,21 +223,35 @@ public class Model {
      * @return An array of Ship objects representing the generated ships.
      */
     public Ship[] getGeneratedShips(int boardId) {
-        int index = 0;
-        Ship[] currentBoardShips = new Ship[(dimension + 1) * dimension / 2];
+        generateShips(boardId);
+        return getRandomizedShips(boardId);
+    }
 
-        if (boardId == 1)
-            firstShips = currentBoardShips;
-        else
-            secondShips = currentBoardShips;
+    /**
+     * Builds the fleet of one board, longest ships first.
+     * <p>
+     * Up to {@link #CLASSIC_MAX_DIMENSION} the classic fleet is used. It grows
+     * with the cube of the dimension and would soon outgrow the board, so larger
+     * boards get copies of the fleet of dimension {@link #CLASSIC_MAX_DIMENSION},
+     * one for every two classic boards of area. Ships stay at most 12 cells long
+     * and cover about a third of the board.
+     *
+     * @param dimension The dimension of the game board.
+     * @return The ships of the fleet, not placed yet.
+     */
+    public static Ship[] newFleet(int dimension) {
+        int longest = Math.min(dimension, CLASSIC_MAX_DIMENSION);
+        int classicSize = CLASSIC_MAX_DIMENSION * 2;
+        int copies = Math.max(1, dimension * dimension * 4 / (2 * classicSize * classicSize));
 
-        for (int i = dimension; i >= 1; i--) {
-            for (int j = 0; j < dimension - i + 1; j++) {
-                currentBoardShips[index++] = new Ship(i, true);
+        Ship[] ships = new Ship[(longest + 1) * longest / 2 * copies];
+        int index = 0;
+        for (int i = longest; i >= 1; i--) {
+            for (int j = 0; j < (longest - i + 1) * copies; j++) {
+                ships[index++] = new Ship(i, true);
             }
         }
-
-        return currentBoardShips;
+        return ships;
     }
 
     /**
@@ -269,6 +260,15 @@ public class Model {
      * @return The recorded game progress.
      */
     public String getRecord() {
-        return record;
+        return moveLog.toRecord(moveLog.size());
+    }
+
+    /**
+     * Gets the log of every shot fired in the game.
+     *
+     * @return The move log.
+     */
+    public MoveLog getMoveLog() {
+        return moveLog;
     }
 }
@@ -0,0 +1,168 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The MoveLog class records every shot of a match in order. Each move is packed
+ * into one int holding the targeted board, the row, the column and whether the
+ * shot hit, and the moves are kept in a growable array. The position of a move
+ * in the log is its sequence number.
+ * <p>
+ * A log may be sized for the moves its match is expected to play, up to
+ * {@value #MAX_INITIAL_CAPACITY}, so that appending a move allocates nothing.
+ */
+public class MoveLog {
+
+    private static final int COORDINATE_BITS = 14;
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+    private static final int HIT_BIT = 1 << (2 * COORDINATE_BITS);
+    private static final int TARGET_SHIFT = 2 * COORDINATE_BITS + 1;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** The most moves a log is sized for before it grows. */
+    public static final int MAX_INITIAL_CAPACITY = 4096;
+
+    private int[] moves;
+    private int size;
+
+    /**
+     * Constructs an empty MoveLog.
+     */
+    public MoveLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty MoveLog sized for the moves of a match.
+     *
+     * @param expectedMoves The number of moves the match may play, of which
+     *                      at most {@value #MAX_INITIAL_CAPACITY} are
+     *                      allocated up front.
+     */
+    public MoveLog(int expectedMoves) {
+        moves = new int[Math.max(1, Math.min(expectedMoves, MAX_INITIAL_CAPACITY))];
+    }
+
+    /**
+     * Appends a move to the log.
+     *
+     * @param targetId The ID of the board receiving the shot.
+     * @param row      The row of the shot.
+     * @param col      The column of the shot.
+     * @param hit      Whether the shot hit a ship.
+     */
+    public void append(int targetId, int row, int col, boolean hit) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = encode(targetId, row, col, hit);
+    }
+
+    /**
+     * Gets the number of moves in the log, which is also the sequence number of
+     * the next move.
+     *
+     * @return The number of moves.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a packed move.
+     *
+     * @param sequence The sequence number of the move.
+     * @return The packed move.
+     */
+    public int get(int sequence) {
+        return moves[sequence];
+    }
+
+    /**
+     * Copies packed moves into an array.
+     *
+     * @param from        The sequence number of the first move to copy.
+     * @param destination The array the moves are copied to.
+     * @return The number of moves copied.
+     */
+    public int copy(int from, int[] destination) {
+        int count = Math.max(0, Math.min(size - from, destination.length));
+        System.arraycopy(moves, from, destination, 0, count);
+        return count;
+    }
+
+    /**
+     * Builds the game progress as the text the clients display, newest move
+     * first.
+     *
+     * @param count The number of moves, from the start of the log, to include.
+     * @return The recorded game progress.
+     */
+    public String toRecord(int count) {
+        StringBuilder record = new StringBuilder(count * 36);
+        for (int i = count - 1; i >= 0; i--) {
+            int move = moves[i];
+            record.append("\n ").append(targetId(move) == 2 ? "FIRST PLAYER" : "SECOND PLAYER").append(": ");
+            Board.appendCoordinate(record, row(move), col(move));
+            record.append(isHit(move) ? " (HIT) " : " (MISSED) ");
+        }
+        for (int i = 0; i < count; i++) {
+            record.append(" \n");
+        }
+        return record.toString();
+    }
+
+    /**
+     * Packs a move into an int.
+     *
+     * @param targetId The ID of the board receiving the shot.
+     * @param row      The row of the shot.
+     * @param col      The column of the shot.
+     * @param hit      Whether the shot hit a ship.
+     * @return The packed move.
+     */
+    public static int encode(int targetId, int row, int col, boolean hit) {
+        return targetId << TARGET_SHIFT | (hit ? HIT_BIT : 0) | (row & COORDINATE_MASK) << COORDINATE_BITS
+                | (col & COORDINATE_MASK);
+    }
+
+    /**
+     * Gets the board a move was fired at.
+     *
+     * @param move The packed move.
+     * @return The ID of the board receiving the shot.
+     */
+    public static int targetId(int move) {
+        return move >>> TARGET_SHIFT;
+    }
+
+    /**
+     * Gets the row of a move.
+     *
+     * @param move The packed move.
+     * @return The row of the shot.
+     */
+    public static int row(int move) {
+        return move >>> COORDINATE_BITS & COORDINATE_MASK;
+    }
+
+    /**
+     * Gets the column of a move.
+     *
+     * @param move The packed move.
+     * @return The column of the shot.
+     */
+    public static int col(int move) {
+        return move & COORDINATE_MASK;
+    }
+
+    /**
+     * Checks whether a move hit a ship.
+     *
+     * @param move The packed move.
+     * @return {@code true} if the shot hit.
+     */
+    public static boolean isHit(int move) {
+        return (move & HIT_BIT) != 0;
+    }
+}
@@ -1,15 +1,19 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
-import miscellaneous.Misc;
-
 /**
  * The Ship class represents a ship in a game. It stores information about the
  * ship's length, position on the game board, health, ship coordinates, and
  * orientation.
  * 
- * Note: The ship coordinates are stored in an array.
+ * Note: Only the position of the ship is stored. Its coordinates are built
+ * when they are displayed, and still sent with the ship when it is serialized,
+ * so clients reading the coordinates keep working.
  * 
  * The health of the ship represents the number of hits it can sustain before
  * being destroyed.
@@ -23,12 +27,19 @@ import miscellaneous.Misc;
  */
 public class Ship implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("isDestroyed", boolean.class),
+            new ObjectStreamField("length", int.class),
+            new ObjectStreamField("row", int.class),
+            new ObjectStreamField("col", int.class),
+            new ObjectStreamField("health", int.class),
+            new ObjectStreamField("shipCoordinates", String[].class),
+            new ObjectStreamField("isHorizontal", boolean.class) };
     private boolean isDestroyed;
     private int length;
     private int row;
     private int col;
     private int health;
-    private String[] shipCoordinates;
     private boolean isHorizontal;
 
     /**
@@ -39,7 +50,6 @@ public class Ship implements Serializable {
     public Ship(int length, boolean isHorizontal) {
         this.isHorizontal = isHorizontal;
         this.length = length;
-        this.shipCoordinates = new String[length];
     }
 
     /**
@@ -79,12 +89,20 @@ public class Ship implements Serializable {
     }
 
     /**
-     * Returns the ship's coordinates.
+     * Returns the ship's coordinates in display form, such as "B3".
      * 
-     * @return an array of coordinates representing the ship's position
+     * @return an array of coordinates representing the ship's position, or
+     *         {@code null} if the ship has not been placed
      */
     public String[] getCoordinates() {
-        return shipCoordinates;
+        if (row == 0) {
+            return null;
+        }
+        String[] coordinates = new String[length];
+        for (int i = 0; i < length; i++) {
+            coordinates[i] = isHorizontal ? Board.toCoordinate(row, col + i) : Board.toCoordinate(row + i, col);
+        }
+        return coordinates;
     }
 
     /**
@@ -97,30 +115,17 @@ public class Ship implements Serializable {
     }
 
     /**
-     * Sets the ship's position coordinates.
+     * Places the ship with its first cell at the given position, restoring its
+     * health.
      * 
-     * @param coordinate the coordinate object representing the ship's position
+     * @param row the row of the first cell, starting at 1
+     * @param col the column of the first cell, starting at 1
      */
-    public void setCoordinate(String coordinate) {
-        shipCoordinates[health++] = coordinate;
-    }
-
     public void setCoordinates(int row, int col) {
         this.row = row;
         this.col = col;
-
-        health = 0;
-
-        if (isHorizontal) {
-            for (int i = col; i < col + length; i++) {
-                shipCoordinates[health++] = Misc.ALPHABET[i] + "" + row;
-            }
-        } else {
-            for (int i = row; i < row + length; i++) {
-                shipCoordinates[health++] = Misc.ALPHABET[col] + "" + i;
-            }
-        }
-
+        this.health = length;
+        this.isDestroyed = false;
     }
 
     /**
@@ -133,6 +138,30 @@ public class Ship implements Serializable {
         
     }
 
+    /**
+     * Sets the health of the ship, as tracked by its {@link Board}.
+     * 
+     * @param health the number of cells that have not been hit
+     */
+    void setHealth(int health) {
+        this.health = health;
+        this.isDestroyed = health == 0;
+    }
+
+    /**
+     * Copies the ship with a given health, to describe it to a client without
+     * sharing the ship of the board.
+     * 
+     * @param health the number of cells that have not been hit
+     * @return the copy of the ship
+     */
+    public Ship withHealth(int health) {
+        Ship copy = new Ship(length, isHorizontal);
+        copy.setCoordinates(row, col);
+        copy.setHealth(health);
+        return copy;
+    }
+
     /**
      * Checks if the ship is destroyed (health is 0).
      * 
@@ -149,4 +178,26 @@ public class Ship implements Serializable {
     public void switchAlignment() {
         isHorizontal = !isHorizontal;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("isDestroyed", isDestroyed);
+        fields.put("length", length);
+        fields.put("row", row);
+        fields.put("col", col);
+        fields.put("health", health);
+        fields.put("shipCoordinates", getCoordinates());
+        fields.put("isHorizontal", isHorizontal);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        isDestroyed = fields.get("isDestroyed", false);
+        length = fields.get("length", 0);
+        row = fields.get("row", 0);
+        col = fields.get("col", 0);
+        health = fields.get("health", 0);
+        isHorizontal = fields.get("isHorizontal", false);
+    }
 }
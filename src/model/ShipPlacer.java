@@ -0,0 +1,207 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The ShipPlacer class places the ships of a board at random on a bitset grid.
+ * Each ship is placed uniformly among the positions and orientations where it
+ * still fits. A few random candidates are tried first, which is cheap while the
+ * board is empty; when they all collide, every valid position is enumerated
+ * and one of them is picked. If a ship does not fit anywhere, the previous
+ * ships are moved again, and after too many attempts the ships are packed row
+ * by row, so placement always finishes.
+ *
+ * A placer keeps its buffers between boards, so one instance should not be
+ * shared between threads.
+ */
+public class ShipPlacer {
+
+    private static final int RANDOM_CANDIDATES = 128;
+    private static final int BACKTRACK_BUDGET = 64;
+    private static final int RESTARTS = 8;
+
+    private final SplittableRandom random;
+    private long[] grid = new long[0];
+    private int[] candidates = new int[0];
+    private int[] placements = new int[0];
+    private int size;
+
+    /**
+     * Constructs a ShipPlacer drawing from the given random generator.
+     *
+     * @param random The generator used to pick positions.
+     */
+    public ShipPlacer(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Places ships on a board, setting their coordinates and orientation.
+     *
+     * @param ships     The ships to place, longest first.
+     * @param dimension The dimension of the game board.
+     */
+    public void place(Ship[] ships, int dimension) {
+        prepare(ships.length, dimension * 2);
+
+        boolean placed = false;
+        for (int attempt = 0; attempt < RESTARTS && !placed; attempt++) {
+            placed = placeRandomly(ships);
+        }
+        if (!placed && !packRows(ships)) {
+            throw new IllegalStateException("The ships do not fit on a board of dimension " + dimension);
+        }
+
+        for (int i = 0; i < ships.length; i++) {
+            Ship ship = ships[i];
+            boolean horizontal = isHorizontal(placements[i]);
+            if (ship.isHorizontal() != horizontal) {
+                ship.switchAlignment();
+            }
+            int cell = placements[i] % (size * size);
+            ship.setCoordinates(cell / size + 1, cell % size + 1);
+        }
+    }
+
+    /**
+     * Sizes the buffers for a board.
+     *
+     * @param shipCount The number of ships.
+     * @param size      The side length of the board.
+     */
+    private void prepare(int shipCount, int size) {
+        this.size = size;
+        int cells = size * size;
+        if (grid.length < (cells + 63) >>> 6) {
+            grid = new long[(cells + 63) >>> 6];
+            candidates = new int[2 * cells];
+        }
+        if (placements.length < shipCount) {
+            placements = new int[shipCount];
+        }
+    }
+
+    /**
+     * Places every ship at random, moving previous ships again when one of them
+     * does not fit.
+     *
+     * @param ships The ships to place.
+     * @return {@code true} if every ship has been placed within the budget.
+     */
+    private boolean placeRandomly(Ship[] ships) {
+        Arrays.fill(grid, 0L);
+        int budget = BACKTRACK_BUDGET;
+        int i = 0;
+        while (i < ships.length) {
+            int placement = pick(ships[i].getLength());
+            if (placement >= 0) {
+                placements[i++] = placement;
+                mark(placement, ships[i - 1].getLength(), true);
+            } else if (i == 0 || budget-- == 0) {
+                return false;
+            } else {
+                // Free the previous ship so it can be placed somewhere else
+                i--;
+                mark(placements[i], ships[i].getLength(), false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks a placement uniformly among the ones where a ship fits.
+     *
+     * @param length The length of the ship.
+     * @return The placement, or -1 if the ship fits nowhere.
+     */
+    private int pick(int length) {
+        int placementCount = 2 * size * size;
+        for (int i = 0; i < RANDOM_CANDIDATES; i++) {
+            int placement = random.nextInt(placementCount);
+            if (fits(placement, length)) {
+                return placement;
+            }
+        }
+
+        int count = 0;
+        for (int placement = 0; placement < placementCount; placement++) {
+            if (fits(placement, length)) {
+                candidates[count++] = placement;
+            }
+        }
+        return count == 0 ? -1 : candidates[random.nextInt(count)];
+    }
+
+    /**
+     * Places the ships row by row, each in the first gap that is long enough.
+     *
+     * @param ships The ships to place, longest first.
+     * @return {@code true} if every ship has been placed.
+     */
+    private boolean packRows(Ship[] ships) {
+        Arrays.fill(grid, 0L);
+        int[] used = new int[size];
+        for (int i = 0; i < ships.length; i++) {
+            int length = ships[i].getLength();
+            int row = 0;
+            while (row < size && used[row] + length > size) {
+                row++;
+            }
+            if (row == size) {
+                return false;
+            }
+            placements[i] = row * size + used[row];
+            used[row] += length;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a ship fits at a placement.
+     *
+     * @param placement The placement: the first cell, plus the number of cells
+     *                  for vertical ships.
+     * @param length    The length of the ship.
+     * @return {@code true} if the ship stays on the board and covers free cells.
+     */
+    private boolean fits(int placement, int length) {
+        boolean horizontal = isHorizontal(placement);
+        int cell = placement % (size * size);
+        int row = cell / size;
+        int col = cell % size;
+        if ((horizontal ? col : row) + length > size) {
+            return false;
+        }
+        int step = horizontal ? 1 : size;
+        for (int i = 0; i < length; i++, cell += step) {
+            if ((grid[cell >>> 6] & 1L << cell) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks or frees the cells covered by a ship.
+     *
+     * @param placement The placement of the ship.
+     * @param length    The length of the ship.
+     * @param occupied  {@code true} to mark the cells, {@code false} to free them.
+     */
+    private void mark(int placement, int length, boolean occupied) {
+        int cell = placement % (size * size);
+        int step = isHorizontal(placement) ? 1 : size;
+        for (int i = 0; i < length; i++, cell += step) {
+            if (occupied) {
+                grid[cell >>> 6] |= 1L << cell;
+            } else {
+                grid[cell >>> 6] &= ~(1L << cell);
+            }
+        }
+    }
+
+    private boolean isHorizontal(int placement) {
+        return placement < size * size;
+    }
+}
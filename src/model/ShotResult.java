@@ -0,0 +1,77 @@
+package model;
+
+/**
+ * The ShotResult class packs the outcome of one shot on a board into one int
+ * holding whether the shot hit, the ship last hit on the board and the health
+ * left to that ship. The outcome is a primitive value, so it costs no
+ * allocation and can be handed to other threads without reading the model
+ * again. Ship indexes fit in 16 bits, far more than the fleet of the largest
+ * board.
+ */
+public final class ShotResult {
+
+    private static final int HIT_BIT = 1;
+    private static final int HEALTH_SHIFT = 1;
+    private static final int HEALTH_MASK = (1 << 15) - 1;
+    private static final int SHIP_SHIFT = 16;
+
+    /** The outcome of a miss on a board whose ships have not been hit yet. */
+    public static final int MISSED = encode(false, -1, 0);
+
+    private ShotResult() {
+    }
+
+    /**
+     * Packs the outcome of a shot into an int.
+     *
+     * @param hit        Whether the shot hit a ship.
+     * @param shipIndex  The index of the ship last hit on the board, or -1 if
+     *                   none has been hit.
+     * @param shipHealth The remaining health of that ship.
+     * @return The packed outcome.
+     */
+    public static int encode(boolean hit, int shipIndex, int shipHealth) {
+        return (shipIndex + 1) << SHIP_SHIFT | (shipHealth & HEALTH_MASK) << HEALTH_SHIFT | (hit ? HIT_BIT : 0);
+    }
+
+    /**
+     * Checks whether the shot hit a ship.
+     *
+     * @param result The packed outcome.
+     * @return {@code true} if the shot hit.
+     */
+    public static boolean isHit(int result) {
+        return (result & HIT_BIT) != 0;
+    }
+
+    /**
+     * Gets the ship last hit on the board, by the shot if it hit.
+     *
+     * @param result The packed outcome.
+     * @return The index of the ship in its board's ship array, or -1 if no
+     *         ship of the board has been hit.
+     */
+    public static int shipIndex(int result) {
+        return (result >>> SHIP_SHIFT) - 1;
+    }
+
+    /**
+     * Gets the health left to the ship last hit on the board.
+     *
+     * @param result The packed outcome.
+     * @return The number of cells of the ship still afloat.
+     */
+    public static int shipHealth(int result) {
+        return result >>> HEALTH_SHIFT & HEALTH_MASK;
+    }
+
+    /**
+     * Checks whether the shot has sunk the ship it hit.
+     *
+     * @param result The packed outcome.
+     * @return {@code true} if the shot hit the last cell of a ship.
+     */
+    public static boolean isSunk(int result) {
+        return isHit(result) && shipHealth(result) == 0;
+    }
+}
@@ -0,0 +1,89 @@
+package replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.Model;
+
+/**
+ * The ReplayArchive class saves every finished match as a replay file in a
+ * directory, forfeited ones included. The files are written on a background thread, so the end of a
+ * match does not wait for the disk, and each file is renamed into place once
+ * complete, so a reader never sees half a replay.
+ * <p>
+ * Files are named {@code match-<start>-<gameId>.replay}, where the start is
+ * the time the archive was opened, so game IDs handed out again after a
+ * restart do not overwrite older replays.
+ */
+public class ReplayArchive {
+
+    /** The extension of replay files. */
+    public static final String EXTENSION = ".replay";
+
+    private final Path directory;
+    private final long startedAt = System.currentTimeMillis();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "replay-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens an archive in a directory.
+     *
+     * @param directory The directory the replays are saved to, created if
+     *                  missing.
+     * @throws IOException If the directory cannot be created.
+     */
+    public ReplayArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Saves a match played to the last ship. Its model must not change
+     * anymore.
+     *
+     * @param gameId    The ID of the match.
+     * @param dimension The dimension of the game board.
+     * @param model     The model holding the boards and moves of the match.
+     * @param winner    The ID of the winning player (1 or 2).
+     */
+    public void save(int gameId, int dimension, Model model, int winner) {
+        save(gameId, dimension, model, winner, 0);
+    }
+
+    /**
+     * Saves a finished match. Its model must not change anymore.
+     *
+     * @param gameId    The ID of the match.
+     * @param dimension The dimension of the game board.
+     * @param model     The model holding the boards and moves of the match.
+     * @param winner    The ID of the winning player (1 or 2).
+     * @param forfeiter The ID of the player who forfeited the match, or 0 if
+     *                  it was played to the last ship.
+     */
+    public void save(int gameId, int dimension, Model model, int winner, int forfeiter) {
+        long endedAt = System.currentTimeMillis();
+        writer.execute(() -> {
+            String name = "match-" + startedAt + "-" + gameId;
+            Path temporary = directory.resolve(name + ".tmp");
+            try {
+                try (DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    ReplayWriter.write(output, gameId, endedAt, dimension, winner, model.getRandomizedShips(1),
+                            model.getRandomizedShips(2), model.getMoveLog(), forfeiter);
+                }
+                Files.move(temporary, directory.resolve(name + EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+}
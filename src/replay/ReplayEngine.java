@@ -0,0 +1,264 @@
+package replay;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import control.ServerConfig;
+import model.Board;
+import model.Model;
+import model.MoveLog;
+import model.Ship;
+
+/**
+ * The ReplayEngine class plays archived matches again through the model, in
+ * parallel, to check that the current rules give every recorded outcome. For
+ * each replay it checks that the fleets fit the rules and do not overlap,
+ * that every move was fired in turn and hit or missed as recorded, and that
+ * the recorded player won, by sinking the last ship or by a forfeit of the
+ * player to move. Players hitting with an accuracy that is hard to
+ * reach without seeing the opponent's board are reported as suspicious.
+ * <p>
+ * Replays are streamed from the directory: only a few files per thread are
+ * open at a time, and their moves are read one by one.
+ * <p>
+ * The settings are given as {@code --name=value} arguments:
+ * <ul>
+ * <li>{@code dir}: the directory of the replays, {@code replays} by
+ * default;</li>
+ * <li>{@code threads}: the number of matches replayed at the same time, one
+ * per processor by default;</li>
+ * <li>{@code accuracy}, {@code shots}: the share of hits, 0.9 by default, and
+ * the number of shots, 20 by default, from which a player is suspicious;</li>
+ * <li>{@code report}: the number of failed or suspicious matches printed, 20
+ * by default.</li>
+ * </ul>
+ */
+public class ReplayEngine {
+
+    private final Path directory;
+    private final int threadCount;
+    private final double suspiciousAccuracy;
+    private final int suspiciousShots;
+    private final int reportLimit;
+
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder suspicious = new LongAdder();
+    private final AtomicInteger reported = new AtomicInteger();
+
+    /**
+     * Constructs a ReplayEngine from its settings.
+     *
+     * @param settings The settings, keyed by name.
+     */
+    public ReplayEngine(Properties settings) {
+        directory = Paths.get(settings.getProperty("dir", "replays"));
+        threadCount = Integer.parseInt(settings.getProperty("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        suspiciousAccuracy = Double.parseDouble(settings.getProperty("accuracy", "0.9"));
+        suspiciousShots = Integer.parseInt(settings.getProperty("shots", "20"));
+        reportLimit = Integer.parseInt(settings.getProperty("report", "20"));
+    }
+
+    /**
+     * Runs the replay engine.
+     *
+     * @param args The settings, each {@code --name=value}.
+     * @throws Exception If the replays cannot be listed or the run is
+     *                   interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        ReplayEngine engine = new ReplayEngine(ServerConfig.parseArgs(args, ""));
+        engine.run();
+        System.exit(engine.failures.sum() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Replays every match of the directory and prints the totals.
+     *
+     * @throws IOException          If the directory cannot be listed.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        // Bounds the files waiting for a thread, so a large archive is never listed in memory
+        Semaphore inFlight = new Semaphore(threadCount * 4);
+        long start = System.nanoTime();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ReplayArchive.EXTENSION)) {
+            for (Path file : files) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        replay(file);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("replayed %d matches, %d moves in %.2f s (%.0f matches/s, %.0f moves/s)%n", matches.sum(),
+                moves.sum(), seconds, matches.sum() / seconds, moves.sum() / seconds);
+        System.out.printf("%d failed, %d suspicious%n", failures.sum(), suspicious.sum());
+    }
+
+    /**
+     * Replays one file and records its outcome.
+     *
+     * @param file The replay file.
+     */
+    private void replay(Path file) {
+        try (ReplayReader replay = new ReplayReader(file)) {
+            String failure = verify(replay);
+            matches.increment();
+            if (failure != null) {
+                failures.increment();
+                report(file.getFileName().toString(), failure);
+            }
+        } catch (IOException e) {
+            failures.increment();
+            report(file.getFileName().toString(), e.toString());
+        }
+    }
+
+    private void report(String subject, String message) {
+        if (reported.getAndIncrement() < reportLimit) {
+            System.out.println(subject + ": " + message);
+        }
+    }
+
+    /**
+     * Plays a replay again through the model.
+     *
+     * @param replay The replay, whose moves have not been read yet.
+     * @return A description of the first difference from the recorded match,
+     *         or {@code null} if the replay gives the recorded outcome.
+     * @throws IOException If the replay cannot be read.
+     */
+    public String verify(ReplayReader replay) throws IOException {
+        int dimension = replay.getDimension();
+        if (dimension < 1 || dimension > Model.MAX_DIMENSION) {
+            return "dimension " + dimension + " is not allowed";
+        }
+        for (int boardId = 1; boardId <= 2; boardId++) {
+            String failure = checkFleet(replay.getShips(boardId), dimension);
+            if (failure != null) {
+                return "board " + boardId + ": " + failure;
+            }
+        }
+
+        Model model = new Model();
+        model.setDimension(dimension);
+        model.placeShips(1, replay.getShips(1));
+        model.placeShips(2, replay.getShips(2));
+
+        int targetId = 2;
+        int winner = 0;
+        int[] shots = new int[3];
+        int[] hits = new int[3];
+        for (int sequence = 0; replay.hasNextMove(); sequence++) {
+            int move = replay.nextMove();
+            if (winner != 0) {
+                return "move " + sequence + " was played after the end of the match";
+            }
+            if (MoveLog.targetId(move) != targetId) {
+                return "move " + sequence + " was played out of turn";
+            }
+            boolean hit = model.receiveShot(targetId, MoveLog.row(move), MoveLog.col(move));
+            if (hit != MoveLog.isHit(move)) {
+                return "move " + sequence + " at " + Board.toCoordinate(MoveLog.row(move), MoveLog.col(move))
+                        + (hit ? " hits but was recorded as missed" : " misses but was recorded as a hit");
+            }
+
+            int playerId = targetId == 2 ? 1 : 2;
+            shots[playerId]++;
+            if (hit) {
+                hits[playerId]++;
+            }
+            if (model.getFleetStatus(targetId).isDefeated()) {
+                winner = playerId;
+            } else if (model.getFleetStatus(playerId).isDefeated()) {
+                winner = targetId;
+            }
+            targetId = playerId;
+        }
+        moves.add(replay.getMoveCount());
+
+        int forfeiter = replay.getForfeiter();
+        if (forfeiter != 0) {
+            // The player to move forfeits, and the player it would have shot at wins
+            if (winner != 0) {
+                return "the match was forfeited after player " + winner + " had won";
+            }
+            if (forfeiter != (targetId == 2 ? 1 : 2)) {
+                return "player " + forfeiter + " forfeited out of turn";
+            }
+            winner = targetId;
+        }
+        if (winner != replay.getWinner()) {
+            return "the winner is " + winner + " but was recorded as " + replay.getWinner();
+        }
+        for (int playerId = 1; playerId <= 2; playerId++) {
+            if (shots[playerId] >= suspiciousShots && hits[playerId] >= suspiciousAccuracy * shots[playerId]) {
+                suspicious.increment();
+                report("game " + replay.getGameId(), String.format("player %d hit %d of %d shots",
+                        playerId, hits[playerId], shots[playerId]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that a fleet is the one the rules give for its dimension, and
+     * that its ships stay on the board without overlapping.
+     *
+     * @param ships     The ships of one board.
+     * @param dimension The dimension of the game board.
+     * @return A description of the problem, or {@code null} if the fleet is
+     *         valid.
+     */
+    private static String checkFleet(Ship[] ships, int dimension) {
+        Ship[] expected = Model.newFleet(dimension);
+        if (ships.length != expected.length) {
+            return ships.length + " ships instead of " + expected.length;
+        }
+
+        int size = dimension * 2;
+        BitSet covered = new BitSet(size * size);
+        for (int i = 0; i < ships.length; i++) {
+            Ship ship = ships[i];
+            if (ship.getLength() != expected[i].getLength()) {
+                return "ship " + i + " is " + ship.getLength() + " cells long instead of " + expected[i].getLength();
+            }
+            int row = ship.getRow();
+            int col = ship.getCol();
+            for (int j = 0; j < ship.getLength(); j++) {
+                int cell = ship.isHorizontal() ? Board.toCell(row, col + j, size) : Board.toCell(row + j, col, size);
+                if (cell < 0) {
+                    return "ship " + i + " leaves the board";
+                }
+                if (covered.get(cell)) {
+                    return "ship " + i + " overlaps another ship";
+                }
+                covered.set(cell);
+            }
+        }
+        return null;
+    }
+}
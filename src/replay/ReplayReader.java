@@ -0,0 +1,175 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.Board;
+import model.Ship;
+
+/**
+ * The ReplayReader class reads a replay written by {@link ReplayWriter}. The
+ * header and the fleets are read when the reader is opened, and the moves are
+ * then read one at a time, so a replay of any length is streamed rather than
+ * held in memory.
+ */
+public class ReplayReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final DataInputStream dataInputStream;
+    private final int gameId;
+    private final long endedAt;
+    private final int dimension;
+    private final int winner;
+    private final Ship[] firstShips;
+    private final Ship[] secondShips;
+    private final int moveCount;
+    private final boolean hasEnding;
+    private int movesRead;
+    private int forfeiter;
+
+    /**
+     * Opens a replay file and reads its header and fleets.
+     *
+     * @param file The replay file.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    public ReplayReader(Path file) throws IOException {
+        dataInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        try {
+            int magic = dataInputStream.readInt();
+            if (magic != ReplayWriter.MAGIC && magic != ReplayWriter.MAGIC_V1) {
+                throw new IOException(file + " is not a replay");
+            }
+            hasEnding = magic == ReplayWriter.MAGIC;
+            gameId = dataInputStream.readInt();
+            endedAt = dataInputStream.readLong();
+            dimension = dataInputStream.readUnsignedShort();
+            winner = dataInputStream.readUnsignedByte();
+            firstShips = readFleet(dimension * 2);
+            secondShips = readFleet(dimension * 2);
+            moveCount = dataInputStream.readInt();
+            if (moveCount == 0) {
+                readEnding();
+            }
+        } catch (IOException e) {
+            dataInputStream.close();
+            throw e;
+        }
+    }
+
+    private Ship[] readFleet(int size) throws IOException {
+        Ship[] ships = new Ship[dataInputStream.readInt()];
+        for (int i = 0; i < ships.length; i++) {
+            int length = dataInputStream.readUnsignedByte();
+            int cell = dataInputStream.readInt();
+            ships[i] = new Ship(length, dataInputStream.readUnsignedByte() == 1);
+            ships[i].setCoordinates(Board.rowOf(cell, size), Board.colOf(cell, size));
+        }
+        return ships;
+    }
+
+    /**
+     * Checks whether moves are left to read.
+     *
+     * @return {@code true} if {@link #nextMove()} can be called.
+     */
+    public boolean hasNextMove() {
+        return movesRead < moveCount;
+    }
+
+    /**
+     * Reads the next move.
+     *
+     * @return The move, packed as by {@link model.MoveLog}.
+     * @throws IOException If the replay cannot be read.
+     */
+    public int nextMove() throws IOException {
+        int move = dataInputStream.readInt();
+        if (++movesRead == moveCount) {
+            readEnding();
+        }
+        return move;
+    }
+
+    private void readEnding() throws IOException {
+        if (hasEnding) {
+            forfeiter = dataInputStream.readUnsignedByte();
+        }
+    }
+
+    /**
+     * Gets the match the replay was recorded from.
+     *
+     * @return The game ID.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the time the match ended.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getEndedAt() {
+        return endedAt;
+    }
+
+    /**
+     * Gets the dimension of the match.
+     *
+     * @return The dimension of the game board.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the winner recorded for the match.
+     *
+     * @return The ID of the winning player (1 or 2).
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Gets the player who forfeited the match. Known once every move has been
+     * read.
+     *
+     * @return The ID of the player, or 0 if the match was played to the last
+     *         ship.
+     */
+    public int getForfeiter() {
+        return forfeiter;
+    }
+
+    /**
+     * Gets the initial layout of a board.
+     *
+     * @param boardId The ID of the board (1 or 2).
+     * @return The ships of the board.
+     */
+    public Ship[] getShips(int boardId) {
+        return boardId == 1 ? firstShips : secondShips;
+    }
+
+    /**
+     * Gets the number of moves of the match.
+     *
+     * @return The number of moves.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataInputStream.close();
+    }
+}
@@ -0,0 +1,80 @@
+package replay;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import model.Board;
+import model.MoveLog;
+import model.Ship;
+
+/**
+ * The ReplayWriter class encodes a finished match as a replay. A replay holds
+ * the initial layout of both boards and the stream of moves, so the match can
+ * be played again through the model:
+ * <ul>
+ * <li>the magic int {@link #MAGIC};</li>
+ * <li>game ID (int), time the match ended in milliseconds since the epoch
+ * (long), dimension (short) and ID of the winner (byte);</li>
+ * <li>the fleet of each board as a ship count (int) followed by the length
+ * (byte), first cell index (int) and orientation (byte) of every ship;</li>
+ * <li>the move count (int) followed by every move packed in an int as by
+ * {@link MoveLog};</li>
+ * <li>the end of the match (byte): 0 if it was played to the last ship, or
+ * the ID of the player who forfeited it by not moving in time.</li>
+ * </ul>
+ * Replays of version 1, whose magic int is {@link #MAGIC_V1}, end with the
+ * moves, and were all played to the last ship.
+ */
+public final class ReplayWriter {
+
+    /** The first int of every replay. */
+    public static final int MAGIC = 0x42535232;
+    /** The first int of the replays written before forfeits were recorded. */
+    public static final int MAGIC_V1 = 0x42535231;
+
+    private ReplayWriter() {
+    }
+
+    /**
+     * Writes a replay.
+     *
+     * @param output      The output the replay is written to.
+     * @param gameId      The ID of the match.
+     * @param endedAt     The time the match ended, in milliseconds since the
+     *                    epoch.
+     * @param dimension   The dimension of the game board.
+     * @param winner      The ID of the winning player (1 or 2).
+     * @param firstShips  The ships of the first board.
+     * @param secondShips The ships of the second board.
+     * @param moves       The moves of the match.
+     * @param forfeiter   The ID of the player who forfeited the match, or 0
+     *                    if it was played to the last ship.
+     * @throws IOException If the replay cannot be written.
+     */
+    public static void write(DataOutput output, int gameId, long endedAt, int dimension, int winner,
+            Ship[] firstShips, Ship[] secondShips, MoveLog moves, int forfeiter) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(gameId);
+        output.writeLong(endedAt);
+        output.writeShort(dimension);
+        output.writeByte(winner);
+        writeFleet(output, firstShips, dimension * 2);
+        writeFleet(output, secondShips, dimension * 2);
+
+        int moveCount = moves.size();
+        output.writeInt(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            output.writeInt(moves.get(i));
+        }
+        output.writeByte(forfeiter);
+    }
+
+    private static void writeFleet(DataOutput output, Ship[] ships, int size) throws IOException {
+        output.writeInt(ships.length);
+        for (Ship ship : ships) {
+            output.writeByte(ship.getLength());
+            output.writeInt(Board.toCell(ship.getRow(), ship.getCol(), size));
+            output.writeByte(ship.isHorizontal() ? 1 : 0);
+        }
+    }
+}
@@ -9,8 +9,11 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import control.Control;
+import control.GameListener;
+import control.ServerConfig;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -20,8 +23,10 @@ import java.awt.FlowLayout;
  * The View class represents the graphical user interface for the Battleship
  * game.
  * It provides components for user input and displays game information.
+ * As a {@link GameListener} it receives the events of the server, which it
+ * shows from the event dispatch thread so that the matches never wait for it.
  */
-public class View extends JFrame {
+public class View extends JFrame implements GameListener {
     private JButton startButton;
     private JButton resultButton;
     private JButton endButton;
@@ -134,12 +139,55 @@ public class View extends JFrame {
     }
 
     /**
-     * Adds an ActionListener to the buttons for handling user actions.
+     * Opens the window of a server started with the given settings. The server
+     * starts when the "Start" button is clicked.
+     *
+     * @param config The settings the input fields are filled with.
+     */
+    public static void open(ServerConfig config) {
+        View view = new View();
+        view.portTextField.setText(Integer.toString(config.getPort()));
+        view.dimensionTextField.setText(Integer.toString(config.getDimension()));
+        view.addController(new Control(view));
+    }
+
+    /**
+     * Adds the listeners that start and stop the server to the buttons.
+     *
+     * @param control The controller of the server.
      */
     public void addController(Control control) {
-        startButton.addActionListener(control);
-        resultButton.addActionListener(control);
-        endButton.addActionListener(control);
+        startButton.addActionListener(e -> handleStartButton(control));
+        endButton.addActionListener(e -> System.exit(0));
+    }
+
+    /**
+     * Handles the start button click event. The server is started on a thread
+     * of its own, so the window stays responsive.
+     *
+     * @param control The controller of the server.
+     */
+    private void handleStartButton(Control control) {
+        int dimension = getDimension() != 0 ? getDimension() : 1;
+        int port;
+        try {
+            port = Integer.parseInt(getPortNumber());
+        } catch (NumberFormatException e) {
+            showError();
+            return;
+        }
+
+        startButton.setEnabled(false);
+        new Thread(() -> {
+            try {
+                control.start(port, dimension);
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    startButton.setEnabled(true);
+                    showError();
+                });
+            }
+        }, "server").start();
     }
 
     /**
@@ -150,26 +198,39 @@ public class View extends JFrame {
                 JOptionPane.INFORMATION_MESSAGE);
     }
 
-    /**
-     * Appends a message to the message box.
-     */
-    public void appendMessageBox(String text) {
-        messageBox.setText(text);
+    @Override
+    public void serverStarted(int port) {
+        SwingUtilities.invokeLater(() -> appendMessageBox("Waiting for players on port " + port));
     }
 
-    /**
-     * Disposes of the current frame.
-     */
-    public void disposeMenu() {
-        this.dispose();
+    @Override
+    public void matchesRestored(int count) {
+        SwingUtilities.invokeLater(() -> appendMessageBox("Restored " + count + " matches in progress"));
+    }
+
+    @Override
+    public void clusterChanged(int epoch, int node, int nodes) {
+        String message = String.format("Cluster epoch %d: serving as node %d of %d", epoch, node + 1, nodes);
+        SwingUtilities.invokeLater(() -> appendMessageBox(message));
+    }
+
+    @Override
+    public void matchStarted(int gameId) {
+        String message = String.format("Both players have connected to game %d. Let the battle begin!", gameId);
+        SwingUtilities.invokeLater(() -> appendMessageBox(message));
+    }
+
+    @Override
+    public void matchEnded(int gameId, int winner) {
+        String winnerName = winner == 1 ? "FIRST PLAYER" : "SECOND PLAYER";
+        String message = String.format("Game %d is over. The winner is %s", gameId, winnerName);
+        SwingUtilities.invokeLater(() -> appendMessageBox(message));
     }
 
     /**
-     * Displays a game over dialog box with the winner's name.
+     * Appends a message to the message box.
      */
-    public void showGameOver(int winner) {
-        String winnerName = winner == 1 ? "FIRST PLAYER" : "SECOND PLAYER";
-        JOptionPane.showMessageDialog(null, "WINNER IS " + winnerName, "Game Over",
-                JOptionPane.INFORMATION_MESSAGE);
+    public void appendMessageBox(String text) {
+        messageBox.append(text + System.lineSeparator());
     }
 }